@@ -1,22 +1,51 @@
 package execute;
 
+import execute.dto.BatchResult;
+import execute.dto.RunResult;
 import execute.dto.VariableDTO;
+import execute.components.LoadListener;
 import logic.labels.Label;
+import logic.program.CancellationToken;
+import logic.program.RunOptions;
 import logic.variables.Variable;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface Engine {
     boolean loadFromXML(String filePath);
 
+    /**
+     * Loads filePath, reporting the parse and then every degree it expands ahead of time
+     * to listener. Cancelling token during the parse keeps the program loaded before;
+     * once the new program is loaded it only stops the expansions ahead of time.
+     * A null listener or token stands for none.
+     */
+    boolean loadFromXML(String filePath, LoadListener listener, CancellationToken token);
+
+    /** Loads a program saved by saveCompiled, with the expansions saved with it. */
+    boolean loadCompiled(String filePath);
+
+    /** Saves the loaded program, its expansions up to degree and the functions it quotes as a .semu file. */
+    boolean saveCompiled(String filePath, int degree);
+
     void printProgram(int degree);
 
     long runProgram(int degree);
 
+    RunResult runProgram(int degree, RunOptions options);
+
     long runProgramAndRecord(int degree, List<Long> inputs);
 
+    RunResult runProgramAndRecord(int degree, List<Long> inputs, RunOptions options);
+
+    BatchResult runBatch(int degree, List<long[]> inputs);
+
+    void runBatch(int degree, Iterator<long[]> inputs, int chunkSize, Consumer<BatchResult> sink);
+
     void resetVars();
 
     boolean validateProgram(int degree);
@@ -29,6 +58,31 @@ public interface Engine {
 
     int getCycles(int degree);
 
+    long getLastRunCycles();
+
+    long getLastRunSteps();
+
+    /** In lazy mode QUOTE is not inlined by expansion; each call is linked when a run first reaches it. */
+    void setLazyExpansion(boolean lazy);
+
+    boolean isLazyExpansion();
+
+    /** In parallel mode large degrees are expanded in chunks on a ForkJoinPool, with the same result. */
+    void setParallelExpansion(boolean parallel);
+
+    boolean isParallelExpansion();
+
+    /**
+     * Keeps expansions in directory, at most maxBytes of them, so a program that was expanded
+     * to its highest degree before starts with every degree when it is loaded again. A null
+     * directory turns this off.
+     */
+    void setExpansionCache(String directory, long maxBytes);
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
     void fillOutVars(Map<String, Variable> vars);
 
     void loadInputs(List<VariableDTO> inputVars);
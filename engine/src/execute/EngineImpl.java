@@ -1,17 +1,35 @@
 package execute;
 
+import execute.dto.BatchResult;
 import execute.dto.InstructionDTO;
+import execute.dto.RunResult;
 import execute.dto.VariableDTO;
+import execute.components.BatchRunner;
+import execute.components.ExpansionCache;
+import execute.components.LoadListener;
 import execute.components.ProgramManager;
+import execute.components.ProgramFingerprint;
+import execute.components.ResultCache;
 import execute.components.RunRecord;
+import execute.components.SemuReader;
+import execute.components.SemuWriter;
 import execute.components.XmlLoader;
 import logic.instructions.Instruction;
+import logic.program.CancellationToken;
+import logic.program.ExecutionContext;
+import logic.program.LinkedProgram;
 import logic.program.Program;
+import logic.program.RunOptions;
+import logic.program.StopReason;
 import logic.variables.Var;
 import logic.variables.Variable;
 import logic.variables.VariableType;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class EngineImpl implements Engine {
@@ -21,17 +39,23 @@ public class EngineImpl implements Engine {
     private ProgramManager pm;
     private final List<RunRecord> history;
     private int runCounter = 0;
+    private long lastRunCycles = 0;
+    private long lastRunSteps = 0;
+    private boolean lastRunFromCache = false;
+    private final ResultCache resultCache = new ResultCache();
+    private String programFingerprint;
+    private ExpansionCache expansionCache;
 
     // Debug state fields
     private boolean debugMode = false;
     private int debugCurrentLine = 0;
-    private int debugCurrentCycles = 0;
+    private long debugCurrentCycles = 0;
     private Program debugProgram = null;
     private List<VariableDTO> debugInputs = null;
     private boolean debugPaused = false;
 
     public EngineImpl() {
-        this.tempVarsMap = new HashMap<>();
+        this.tempVarsMap = new ConcurrentHashMap<>(); // expansions add temps from other threads
         this.inputVarsMap = new HashMap<>();
         this.pm = new ProgramManager(tempVarsMap);
         this.history = new ArrayList<>();
@@ -70,26 +94,114 @@ public class EngineImpl implements Engine {
         return pm.getProgram(degree).cycles();
     }
 
+    @Override
+    public long getLastRunCycles() {
+        return lastRunCycles;
+    }
+
+    @Override
+    public long getLastRunSteps() {
+        return lastRunSteps;
+    }
+
     @Override
     public boolean loadFromXML(String filePath) {
         try {
             Map<String, Variable> vars = new HashMap<>();
             Program program = XmlLoader.parse(filePath, vars);
-            if (program != null) {
-                this.fillOutVars(vars);
-                pm.loadNewProgram(program);
-                this.history.clear();
-                // Reset debug state when loading new program
-                debugStop();
-                System.out.println("Program '" + program.getName() + "' loaded successfully!");
-                return true;
+            return this.install(program, vars);
+        } catch (Exception e) {
+            System.err.println("Error loading program: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean loadFromXML(String filePath, LoadListener listener, CancellationToken token) {
+        listener = listener == null ? LoadListener.NONE : listener;
+        token = token == null ? new CancellationToken() : token; // never cancelled
+        try {
+            Map<String, Variable> vars = new HashMap<>();
+            Program program = XmlLoader.parse(filePath, vars, listener, token);
+            if (!this.install(program, vars)) {
+                return false;
             }
+        } catch (CancellationException e) {
+            System.out.println("Loading cancelled.");
             return false;
         } catch (Exception e) {
             System.err.println("Error loading program: " + e.getMessage());
             e.printStackTrace();
             return false;
         }
+
+        // the program is in place, cancelling from here on only stops the expansions ahead of time
+        int maxDegree = pm.maxDegree();
+        try {
+            for (int degree = 1; degree <= maxDegree && !token.isCancelled(); degree++) {
+                pm.getProgram(degree);
+                listener.expanded(degree, maxDegree);
+            }
+        } catch (RuntimeException e) {
+            // the degree is expanded again, and fails again, when it is asked for
+            System.err.println("Error expanding program: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /** Makes program, parsed with vars, the loaded program. */
+    private boolean install(Program program, Map<String, Variable> vars) {
+        if (program == null) {
+            return false;
+        }
+        List<Program> cached = expansionCache == null
+                ? List.of()
+                : expansionCache.get(program, pm.isLazyCalls(), vars);
+        this.fillOutVars(vars);
+        pm.loadNewProgram(program, cached);
+        this.programFingerprint = ProgramFingerprint.of(program);
+        this.history.clear();
+        // Reset debug state when loading new program
+        debugStop();
+        System.out.println("Program '" + program.getName() + "' loaded successfully!");
+        return true;
+    }
+
+    @Override
+    public boolean loadCompiled(String filePath) {
+        try {
+            Map<String, Variable> vars = new HashMap<>();
+            SemuReader reader = SemuReader.open(filePath, vars);
+            Program program = reader.getProgram();
+            this.fillOutVars(vars);
+            // expansions saved in the other mode do not match this one
+            pm.loadNewProgram(program, reader.isLazyCalls() == pm.isLazyCalls() ? reader.getExpansions() : List.of());
+            this.programFingerprint = ProgramFingerprint.of(program);
+            this.history.clear();
+            debugStop();
+            System.out.println("Program '" + program.getName() + "' loaded successfully!");
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error loading program: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean saveCompiled(String filePath, int degree) {
+        try {
+            List<Program> degrees = new ArrayList<>();
+            for (int d = 0; d <= degree; d++) {
+                degrees.add(pm.getProgram(d));
+            }
+            SemuWriter.write(filePath, degrees, pm.isLazyCalls());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving program: " + e.getMessage());
+            return false;
+        }
     }
 
     @Override
@@ -135,43 +247,189 @@ public class EngineImpl implements Engine {
             return;
         }
         for (RunRecord r : history) {
-            System.out.printf("#%d | degree = %d | inputs = %s | y = %d | cycles = %d%n",
-                    r.getRunId(), r.getDegree(), r.getInputs(), r.getResultY(), r.getCycles());
+            System.out.printf("#%d | degree = %d | inputs = %s | y = %d | cycles = %d | steps = %d%n",
+                    r.getRunId(), r.getDegree(), r.getInputs(), r.getResultY(), r.getCycles(), r.getSteps());
         }
     }
 
     @Override
     public long runProgram(int degree) {
+        return runProgram(degree, RunOptions.NONE).getResult();
+    }
+
+    @Override
+    public RunResult runProgram(int degree, RunOptions options) {
+        LinkedProgram program = pm.getLinkedProgram(degree);
+        lastRunCycles = 0;
+        lastRunSteps = 0;
+        lastRunFromCache = false;
+        if (program == null) {
+            return new RunResult(0, 0, 0, StopReason.COMPLETED, List.of());
+        }
+
+        // outputs and temps start at zero, inputs keep their loaded values
+        ExecutionContext ctx = program.newContext();
+        long[] inputs = inputVector();
+        String key = pm.isLazyCalls() ? programFingerprint + ":lazy" : programFingerprint;
+        RunResult cached = resultCache.get(key, degree, inputs, options);
+        RunResult result;
+        if (cached != null) {
+            cached.getVariables().forEach(v -> {
+                int slot = program.slotOf(v.getName());
+                if (slot >= 0) {
+                    ctx.set(slot, v.getValue());
+                }
+            });
+            result = cached;
+            lastRunFromCache = true;
+        } else {
+            inputVarsMap.values().forEach(v -> loadSlot(program, ctx, v));
+            StopReason reason = program.run(ctx, options);
+            result = new RunResult(ctx.get(LinkedProgram.OUTPUT_SLOT), ctx.getCycles(), ctx.getSteps(), reason,
+                    snapshot(program, ctx));
+            if (result.isCompleted()) {
+                resultCache.put(key, degree, inputs, result);
+            }
+        }
+        lastRunCycles = result.getCycles();
+        lastRunSteps = result.getSteps();
+
+        inputVarsMap.values().forEach(v -> storeSlot(program, ctx, v, v.getValue()));
+        tempVarsMap.values().forEach(v -> storeSlot(program, ctx, v, 0));
         if (outputVar != null) {
-            outputVar.setValue(0);
+            outputVar.setValue(ctx.get(LinkedProgram.OUTPUT_SLOT));
         }
-        tempVarsMap.values().forEach(v -> v.setValue(0));
-        pm.runProgram(degree);
-        return (outputVar != null) ? outputVar.getValue() : 0;
+        return result;
+    }
+
+    /** Values of x1..xn as loaded, indexed by input number - 1. */
+    private long[] inputVector() {
+        int size = inputVarsMap.values().stream().mapToInt(Variable::getNum).max().orElse(0);
+        long[] inputs = new long[size];
+        for (Variable v : inputVarsMap.values()) {
+            int index = v.getNum() - 1;
+            if (0 <= index && index < inputs.length) { // an input outside x1..xn stays 0
+                inputs[index] = v.getValue();
+            }
+        }
+        return inputs;
+    }
+
+    @Override
+    public void setLazyExpansion(boolean lazy) {
+        pm.setLazyCalls(lazy);
+    }
+
+    @Override
+    public boolean isLazyExpansion() {
+        return pm.isLazyCalls();
+    }
+
+    @Override
+    public void setParallelExpansion(boolean parallel) {
+        pm.setParallelExpansion(parallel);
+    }
+
+    @Override
+    public boolean isParallelExpansion() {
+        return pm.isParallelExpansion();
+    }
+
+    @Override
+    public void setExpansionCache(String directory, long maxBytes) {
+        expansionCache = directory == null ? null : new ExpansionCache(Path.of(directory), maxBytes);
+        pm.setExpansionCache(expansionCache);
+    }
+
+    @Override
+    public long getCacheHits() {
+        return resultCache.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return resultCache.getMisses();
+    }
+
+    private List<VariableDTO> snapshot(LinkedProgram program, ExecutionContext ctx) {
+        List<VariableDTO> variables = new ArrayList<>();
+        for (int slot = 0; slot < program.getSlotCount(); slot++) {
+            Variable v = program.getSlotVariable(slot);
+            if (v.getType() != null) {
+                variables.add(new VariableDTO(v.getType(), v.getNum(), ctx.get(slot)));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Runs the program once per input vector in parallel. Value i of a vector is x(i+1);
+     * the engine's variables and history are left untouched.
+     */
+    @Override
+    public BatchResult runBatch(int degree, List<long[]> inputs) {
+        LinkedProgram program = pm.getLinkedProgram(degree);
+        if (program == null) {
+            return new BatchResult(new long[0], new long[0]);
+        }
+        return new BatchRunner(program).run(inputs);
+    }
+
+    @Override
+    public void runBatch(int degree, Iterator<long[]> inputs, int chunkSize, Consumer<BatchResult> sink) {
+        LinkedProgram program = pm.getLinkedProgram(degree);
+        if (program != null) {
+            new BatchRunner(program).stream(inputs, chunkSize, sink);
+        }
+    }
+
+    private void loadSlot(LinkedProgram program, ExecutionContext ctx, Variable v) {
+        int slot = program.slotOf(v.getName());
+        if (slot >= 0) {
+            ctx.set(slot, v.getValue());
+        }
+    }
+
+    private void storeSlot(LinkedProgram program, ExecutionContext ctx, Variable v, long unusedValue) {
+        int slot = program.slotOf(v.getName());
+        v.setValue(slot >= 0 ? ctx.get(slot) : unusedValue);
     }
 
     @Override
     public long runProgramAndRecord(int degree, List<Long> inputs) {
+        return runProgramAndRecord(degree, inputs, RunOptions.NONE).getResult();
+    }
+
+    @Override
+    public RunResult runProgramAndRecord(int degree, List<Long> inputs, RunOptions options) {
         if (debugMode) {
-            // If we're in debug mode, just return current output value
-            return (outputVar != null) ? outputVar.getValue() : 0;
+            // If we're in debug mode, don't run, just return current output value
+            long output = (outputVar != null) ? outputVar.getValue() : 0;
+            return new RunResult(output, debugCurrentCycles, 0, StopReason.CANCELLED, List.of());
         }
-
-        // Normal execution
-        long result = this.runProgram(degree);
-        int cycles = pm.getProgramCycles(degree);
+        RunResult result = this.runProgram(degree, options);
 
         runCounter++;
-        history.add(new RunRecord(runCounter, degree, inputs, result, cycles));
+        history.add(new RunRecord(runCounter, degree, inputs, result.getResult(), lastRunCycles, lastRunSteps,
+                lastRunFromCache));
 
         return result;
     }
 
     public List<InstructionDTO> getInstructionsOfProgram(int degree) {
         if (!isLoaded()) return List.of();
-        return pm.getProgram(degree).getInstructions().stream()
-                .map(InstructionDTO::new)
-                .collect(Collectors.toList());
+        return InstructionDTO.of(pm.getProgram(degree).compact());
+    }
+
+    /** Like getInstructionsOfProgram, with every REPEATED_INCREASE shown as its INCREASE lines when expandRepeated is set. */
+    public List<InstructionDTO> getInstructionsOfProgram(int degree, boolean expandRepeated) {
+        List<InstructionDTO> instructions = getInstructionsOfProgram(degree);
+        if (!expandRepeated) {
+            return instructions;
+        }
+        List<InstructionDTO> result = new ArrayList<>(instructions.size());
+        instructions.forEach(dto -> result.addAll(dto.expandRepeated()));
+        return result;
     }
 
     public List<InstructionDTO> getExpansionHistory(InstructionDTO dto) {
@@ -406,7 +664,7 @@ public class EngineImpl implements Engine {
     /**
      * Get current cycles in debug mode
      */
-    public int getCurrentCycles() {
+    public long getCurrentCycles() {
         if (debugMode) {
             return debugCurrentCycles;
         }
@@ -0,0 +1,78 @@
+package execute;
+
+import execute.components.ProgramManager;
+import execute.components.XmlLoader;
+import logic.program.Program;
+import logic.variables.Variable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long expanding each degree takes.
+ * Usage: {@code ExpansionBenchmark [-runs N] [-parallel] [function.xml ...] program.xml}, where the
+ * functions a program quotes are loaded first and the last file is the one measured.
+ * Every run loads the program again and expands degree 1 to the maximum in order,
+ * and the median time of each degree is printed with its instruction count and the
+ * number of segments its instructions are stored in. -parallel expands in parallel mode.
+ */
+public class ExpansionBenchmark {
+    public static void main(String[] args) throws Exception {
+        int runs = 10;
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-runs")) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        boolean parallel = false;
+        if (args.length > first && args[first].equals("-parallel")) {
+            parallel = true;
+            first++;
+        }
+        if (args.length <= first || runs < 1) {
+            System.err.println("Usage: ExpansionBenchmark [-runs N] [-parallel] [function.xml ...] program.xml");
+            System.err.println("N is at least 1.");
+            return;
+        }
+
+        for (int i = first; i < args.length - 1; i++) {
+            XmlLoader.parse(args[i], new HashMap<>()); // registers the function
+        }
+        String path = args[args.length - 1];
+
+        long[][] nanos = null;
+        int[] sizes = null;
+        int[] segments = null;
+        for (int run = 0; run < runs; run++) {
+            Map<String, Variable> vars = new HashMap<>();
+            Program program = XmlLoader.parse(path, vars);
+            ProgramManager pm = new ProgramManager(new ConcurrentHashMap<>());
+            pm.setParallelExpansion(parallel);
+            pm.loadNewProgram(program);
+
+            int maxDegree = pm.maxDegree();
+            if (nanos == null) {
+                nanos = new long[maxDegree + 1][runs];
+                sizes = new int[maxDegree + 1];
+                segments = new int[maxDegree + 1];
+            }
+            for (int degree = 0; degree <= maxDegree; degree++) {
+                long start = System.nanoTime();
+                Program expanded = pm.getProgram(degree);
+                nanos[degree][run] = System.nanoTime() - start;
+                sizes[degree] = expanded.getInstructionRope().size();
+                segments[degree] = expanded.getInstructionRope().segmentCount();
+            }
+        }
+
+        System.out.printf("%-8s %14s %10s %12s%n", "degree", "instructions", "segments", "median ms");
+        for (int degree = 0; degree < nanos.length; degree++) {
+            long[] times = nanos[degree];
+            Arrays.sort(times);
+            System.out.printf("%-8d %14d %10d %12.3f%n", degree, sizes[degree], segments[degree],
+                    times[times.length / 2] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package execute.components;
+
+import execute.dto.BatchResult;
+import logic.program.ExecutionContext;
+import logic.program.LinkedProgram;
+import logic.variables.Variable;
+import logic.variables.VariableType;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Runs one linked program over many input vectors on a ForkJoinPool. The program is
+ * shared by every worker, each worker owns one ExecutionContext that it resets between
+ * runs. Value i of an input vector is loaded into x(i+1).
+ */
+public class BatchRunner {
+    // input vectors a single task runs before it stops splitting
+    private static final int LEAF_SIZE = 256;
+
+    private final LinkedProgram program;
+    private final ForkJoinPool pool;
+    private final int[] inputSlots;
+
+    public BatchRunner(LinkedProgram program) {
+        this(program, ForkJoinPool.commonPool());
+    }
+
+    public BatchRunner(LinkedProgram program, ForkJoinPool pool) {
+        this.program = program;
+        this.pool = pool;
+
+        int inputCount = 0;
+        for (int slot = 0; slot < program.getSlotCount(); slot++) {
+            Variable v = program.getSlotVariable(slot);
+            if (v.getType() == VariableType.INPUT) {
+                inputCount = Math.max(inputCount, v.getNum());
+            }
+        }
+        this.inputSlots = new int[inputCount];
+        for (int i = 0; i < inputCount; i++) {
+            inputSlots[i] = program.slotOf("x" + (i + 1));
+        }
+    }
+
+    public BatchResult run(List<long[]> inputs) {
+        long[] outputs = new long[inputs.size()];
+        long[] cycles = new long[inputs.size()];
+        pool.invoke(new BatchTask(inputs, outputs, cycles, 0, inputs.size()));
+        return new BatchResult(outputs, cycles);
+    }
+
+    /** Runs the inputs chunk by chunk and hands every chunk's result to sink, in input order. */
+    public void stream(Iterator<long[]> inputs, int chunkSize, Consumer<BatchResult> sink) {
+        List<long[]> chunk = new ArrayList<>(chunkSize);
+        while (inputs.hasNext()) {
+            chunk.add(inputs.next());
+            if (chunk.size() == chunkSize) {
+                sink.accept(run(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sink.accept(run(chunk));
+        }
+    }
+
+    private void runRange(List<long[]> inputs, long[] outputs, long[] cycles, int from, int to) {
+        ExecutionContext ctx = program.newContext();
+        for (int i = from; i < to; i++) {
+            ctx.reset();
+            long[] values = inputs.get(i);
+            for (int j = 0; j < values.length && j < inputSlots.length; j++) {
+                if (inputSlots[j] >= 0) {
+                    ctx.set(inputSlots[j], values[j]);
+                }
+            }
+            program.run(ctx);
+            outputs[i] = ctx.get(LinkedProgram.OUTPUT_SLOT);
+            cycles[i] = ctx.getCycles();
+        }
+    }
+
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class BatchTask extends RecursiveAction {
+        private final List<long[]> inputs;
+        private final long[] outputs;
+        private final long[] cycles;
+        private final int from;
+        private final int to;
+
+        BatchTask(List<long[]> inputs, long[] outputs, long[] cycles, int from, int to) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.cycles = cycles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                runRange(inputs, outputs, cycles, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(inputs, outputs, cycles, from, middle),
+                    new BatchTask(inputs, outputs, cycles, middle, to));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package execute.components;
+
+import logic.program.Program;
+import logic.variables.Variable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Directory of expanded programs in the .semu format, one file per program fingerprint
+ * and expansion mode. A hit hands out the stored degrees, each decoded the first time it
+ * is used. Files are checked against their checksum when opened and deleted if they fail.
+ * The directory is kept under a size bound by deleting the least recently used files,
+ * with a file's modification time as the time it was last used.
+ */
+public class ExpansionCache {
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String SUFFIX = ".semu";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ExpansionCache(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    public ExpansionCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The stored expansions of program, degree 1 first, or an empty list. The variables
+     * of the expansions are added to varsMap, reusing the ones already there.
+     */
+    public List<Program> get(Program program, boolean lazyCalls, Map<String, Variable> varsMap) {
+        Path file = this.fileOf(program, lazyCalls);
+        if (!Files.isRegularFile(file)) {
+            return List.of();
+        }
+        try {
+            SemuReader reader = SemuReader.open(file.toString(), varsMap, false);
+            if (reader.isLazyCalls() != lazyCalls) {
+                return List.of();
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return reader.getExpansions();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Dropping expansion cache entry " + file.getFileName() + ": " + e.getMessage());
+            this.delete(file);
+            return List.of();
+        }
+    }
+
+    /**
+     * Stores degrees, where degrees.get(d) is the program expanded to degree d, replacing the
+     * earlier entry. A failure is only logged, the expansion it caches stands without it.
+     */
+    public synchronized void put(List<Program> degrees, boolean lazyCalls) {
+        try {
+            Files.createDirectories(directory);
+            Path file = this.fileOf(degrees.get(0), lazyCalls);
+            Path temp = Files.createTempFile(directory, "expansion", ".tmp");
+            try {
+                SemuWriter.write(temp.toString(), degrees, lazyCalls);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            this.evict(file);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not store expansions: " + e.getMessage());
+        }
+    }
+
+    /** Deletes the least recently used files other than keep until the directory fits maxBytes. */
+    private void evict(Path keep) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        long total = 0;
+        for (Path f : files) {
+            total += Files.size(f);
+        }
+        files.sort(Comparator.comparing(ExpansionCache::lastUsed));
+        for (Path f : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (!f.equals(keep)) {
+                total -= Files.size(f);
+                this.delete(f);
+            }
+        }
+    }
+
+    private static FileTime lastUsed(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // an entry that cannot be deleted is retried on the next eviction
+        }
+    }
+
+    private Path fileOf(Program program, boolean lazyCalls) {
+        return directory.resolve(ProgramFingerprint.of(program) + (lazyCalls ? "-lazy" : "") + SUFFIX);
+    }
+}
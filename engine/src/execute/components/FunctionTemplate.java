@@ -0,0 +1,178 @@
+package execute.components;
+
+import logic.instructions.Instruction;
+import logic.instructions.api.basic.Decrease;
+import logic.instructions.api.basic.Increase;
+import logic.instructions.api.basic.JumpNotZero;
+import logic.instructions.api.basic.Neutral;
+import logic.instructions.api.basic.RepeatedIncrease;
+import logic.instructions.api.synthetic.*;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.program.Program;
+import logic.variables.Variable;
+import logic.variables.VariableType;
+
+import java.util.*;
+
+/**
+ * A function body prepared once for QUOTE inlining. Variables and labels are replaced by
+ * indexes: temp k of a call site is the k-th temp allocated for it and label k the k-th
+ * label, so every call site is produced from fresh temps and labels without walking the
+ * function's variables by name. Temps are laid out as the inputs in order of appearance,
+ * then the function's z variables, then y, then any other variable it uses. Labels are
+ * the function's labels followed by the join label that replaces EXIT.
+ */
+public class FunctionTemplate {
+    private static final int NO_LABEL = -1;
+    private static final int KEEP_LABEL = -2;
+
+    private final int inputCount;
+    private final int tempCount;
+    private final int ownTempCount;      // temps before the other variables
+    private final int outputTemp;        // -1 when the function never writes y
+    private final int labelCount;
+
+    private final Instruction[] code;
+    private final int[][] vars;
+    private final int[] selfLabels;
+    private final int[] targetLabels;
+
+    private FunctionTemplate(Program function) {
+        List<Instruction> instructions = function.getInstructions();
+        Map<String, Integer> temps = new HashMap<>();
+
+        Set<Variable> funcVars = new LinkedHashSet<>();
+        for (Instruction fi : instructions) {
+            funcVars.addAll(fi.getVars());
+        }
+        List<Variable> inputs = new ArrayList<>();
+        Variable output = null;
+        for (Variable fv : funcVars) {
+            if (fv.getType() == VariableType.INPUT) inputs.add(fv);
+            else if (fv.getType() == VariableType.OUTPUT) output = fv;
+        }
+        for (Variable in : inputs) {
+            temps.put(in.getName(), temps.size());
+        }
+        for (Variable fv : funcVars) {
+            if (fv.getType() == VariableType.TEMP) {
+                temps.putIfAbsent(fv.getName(), temps.size());
+            }
+        }
+        int out = -1;
+        if (output != null) {
+            out = temps.size();
+            temps.put(output.getName(), out);
+        }
+
+        int own = temps.size();
+
+        LabelGenerator funcLabelGen = new LabelGenerator();
+        funcLabelGen.loadInstructionLabels(instructions);
+        Map<Label, Integer> labels = new HashMap<>();
+        for (Label l : funcLabelGen.getLabels()) {
+            labels.put(l, labels.size());
+        }
+        int join = labels.size();
+
+        this.code = instructions.toArray(new Instruction[0]);
+        this.vars = new int[code.length][];
+        this.selfLabels = new int[code.length];
+        this.targetLabels = new int[code.length];
+        for (int i = 0; i < code.length; i++) {
+            List<Variable> used = code[i].getVars();
+            vars[i] = new int[used.size()];
+            for (int j = 0; j < used.size(); j++) {
+                vars[i][j] = temps.computeIfAbsent(used.get(j).getName(), name -> temps.size());
+            }
+            selfLabels[i] = labels.getOrDefault(code[i].getSelfLabel(), NO_LABEL);
+            Label target = code[i].getTargetLabel();
+            targetLabels[i] = target.equals(FixedLabel.EXIT) ? join : labels.getOrDefault(target, KEEP_LABEL);
+        }
+
+        this.inputCount = inputs.size();
+        this.tempCount = temps.size();
+        this.ownTempCount = own;
+        this.outputTemp = out;
+        this.labelCount = join + 1;
+    }
+
+    public static FunctionTemplate of(Program function) {
+        return new FunctionTemplate(function);
+    }
+
+    /** Number of inputs, each assigned from the call's argument of the same position. */
+    public int getInputCount() { return inputCount; }
+
+    /** Number of temps a call site must allocate, in the order of their indexes. */
+    public int getTempCount() { return tempCount; }
+
+    /** Number of temps for the inputs, z variables and y; the rest are allocated after the arguments are read. */
+    public int getOwnTempCount() { return ownTempCount; }
+
+    /** Number of labels a call site must allocate, the last one is the join label. */
+    public int getLabelCount() { return labelCount; }
+
+    /**
+     * Emits the inlined call: the input assignments, the body and the copy of the output
+     * into target, numbered from lineNum and all with call as their parent. An input whose
+     * argument is null is zeroed instead.
+     */
+    public List<Instruction> instantiate(Instruction call, Label self, List<Variable> arguments, Variable target,
+                                         Variable[] temps, Label[] labels, int lineNum) {
+        List<Instruction> result = new ArrayList<>(inputCount + code.length + 3);
+
+        // the call's label goes on its first line only, two lines of a degree may not share one
+        Label first = self;
+        if (inputCount == 0 && self != FixedLabel.EMPTY && (code.length == 0 || selfLabels[0] != NO_LABEL)) {
+            result.add(new Neutral(self, target, lineNum++, call));
+            first = FixedLabel.EMPTY;
+        }
+        for (int i = 0; i < inputCount; i++) {
+            Variable argument = arguments.get(i);
+            result.add(argument == null
+                    ? new ZeroVariable(first, temps[i], lineNum++, call)
+                    : new Assignment(first, temps[i], argument, lineNum++, call));
+            first = FixedLabel.EMPTY;
+        }
+
+        for (int i = 0; i < code.length; i++) {
+            Instruction finstr = code[i];
+            Label mappedSelf = selfLabels[i] == NO_LABEL ? first : labels[selfLabels[i]];
+            first = FixedLabel.EMPTY;
+            Label mappedTarget = targetLabels[i] == KEEP_LABEL ? finstr.getTargetLabel() : labels[targetLabels[i]];
+            int[] slots = vars[i];
+            Variable v1 = slots.length > 0 ? temps[slots[0]] : null;
+            Variable v2 = slots.length > 1 ? temps[slots[1]] : v1;
+
+            switch (finstr.getData()) {
+                case INCREASE -> result.add(new Increase(mappedSelf, v1, lineNum++, call));
+                case DECREASE -> result.add(new Decrease(mappedSelf, v1, lineNum++, call));
+                case REPEATED_INCREASE ->
+                        result.add(new RepeatedIncrease(mappedSelf, v1, finstr.getConst(), lineNum++, call));
+                case JUMP_NOT_ZERO -> result.add(new JumpNotZero(mappedSelf, v1, mappedTarget, lineNum++, call));
+                case NO_OP -> result.add(new Neutral(mappedSelf, v1, lineNum++, call));
+                case ZERO_VARIABLE -> result.add(new ZeroVariable(mappedSelf, v1, lineNum++, call));
+                case GOTO_LABEL -> result.add(new GoToLabel(mappedSelf, mappedTarget, lineNum++, call));
+                case ASSIGNMENT -> result.add(new Assignment(mappedSelf, v1, v2, lineNum++, call));
+                case CONSTANT_ASSIGNMENT ->
+                        result.add(new ConstantAssignment(mappedSelf, v1, finstr.getConst(), lineNum++, call));
+                case JUMP_ZERO -> result.add(new JumpZero(mappedSelf, v1, mappedTarget, lineNum++, call));
+                case JUMP_EQUAL_CONSTANT ->
+                        result.add(new JumpEqualConstant(mappedSelf, v1, finstr.getConst(), mappedTarget, lineNum++, call));
+                case JUMP_EQUAL_VARIABLE ->
+                        result.add(new JumpEqualVariable(mappedSelf, v1, v2, mappedTarget, lineNum++, call));
+                // nested calls are kept as they are and expanded by the next degree
+                default -> result.add(finstr);
+            }
+        }
+
+        Variable zy = outputTemp < 0 ? null : temps[outputTemp];
+        if (zy != null && target != null) {
+            result.add(new Assignment(FixedLabel.EMPTY, target, zy, lineNum++, call));
+        }
+        result.add(new Neutral(labels[labelCount - 1], zy != null ? zy : target, lineNum, call));
+        return result;
+    }
+}
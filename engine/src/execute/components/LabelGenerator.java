@@ -19,6 +19,10 @@ public class LabelGenerator {
         return new ArrayList<>(labels.values());
     }
 
+    public int getMaxLabel() {
+        return maxLabel;
+    }
+
     public void addLabel(Label label) {
         if (label.getClass().equals(NumericLabel.class) && !labels.containsKey(label.getLabel())) {
             labels.put(label.getLabel(), label);
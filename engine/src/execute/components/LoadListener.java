@@ -0,0 +1,15 @@
+package execute.components;
+
+/**
+ * Progress of a program load: the parse, then the degrees expanded ahead of time.
+ * Called on the loading thread.
+ */
+public interface LoadListener {
+    LoadListener NONE = new LoadListener() {};
+
+    /** bytesRead of totalBytes have been read and instructions built so far. */
+    default void parsed(long bytesRead, long totalBytes, int instructions) {}
+
+    /** Degree degree of maxDegree has been expanded. */
+    default void expanded(int degree, int maxDegree) {}
+}
@@ -0,0 +1,91 @@
+package execute.components;
+
+import logic.instructions.Instruction;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.program.Program;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SHA-256 of a program's instructions and of every function it calls, directly or inside
+ * the arguments of a call, so two loads of the same program text share a fingerprint.
+ */
+public class ProgramFingerprint {
+    private ProgramFingerprint() {}
+
+    public static String of(Program program) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, program, new HashSet<>());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, Program program, Set<String> visited) {
+        if (!visited.add(program.getName())) {
+            return;
+        }
+        put(digest, program.getName());
+        for (Instruction instr : program.getInstructionRope()) {
+            put(digest, instr.getSelfLabel().getLabel() + " " + instr.getData() + " " + instr.print());
+        }
+
+        for (Instruction instr : program.getInstructionRope()) {
+            for (String function : calledFunctions(instr)) {
+                Program quoted = ProgramRepository.get(function);
+                if (quoted != null) {
+                    update(digest, quoted, visited);
+                }
+            }
+        }
+    }
+
+    /**
+     * Names of the functions instr calls: the function of a QUOTE or JUMP_EQUAL_FUNCTION,
+     * then every function called in its arguments at any depth, such as Const7 in
+     * {@code (Plus,x1,(Const7))}.
+     */
+    static List<String> calledFunctions(Instruction instr) {
+        List<String> names = new ArrayList<>();
+        if (instr instanceof Quote quote) {
+            names.add(quote.getFunctionName());
+            addNestedCalls(quote.getFunctionArguments(), names);
+        } else if (instr instanceof JumpEqualFunction jef) {
+            names.add(jef.getFunctionName());
+            addNestedCalls(jef.getFunctionArguments(), names);
+        }
+        return names;
+    }
+
+    // every nested call is written (name,arguments) or (name), so each '(' starts a name
+    private static void addNestedCalls(String arguments, List<String> names) {
+        if (arguments == null) {
+            return;
+        }
+        for (int open = arguments.indexOf('('); open >= 0; open = arguments.indexOf('(', open + 1)) {
+            int end = open + 1;
+            while (end < arguments.length() && ",()".indexOf(arguments.charAt(end)) < 0) {
+                end++;
+            }
+            String name = arguments.substring(open + 1, end).trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+    }
+
+    private static void put(MessageDigest digest, String line) {
+        digest.update(line.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+}
@@ -1,13 +1,19 @@
 package execute.components;
 
 import logic.instructions.Instruction;
+import logic.instructions.InstructionType;
 import logic.instructions.api.basic.Decrease;
 import logic.instructions.api.basic.Increase;
 import logic.instructions.api.basic.JumpNotZero;
 import logic.instructions.api.basic.Neutral;
+import logic.instructions.api.basic.RepeatedIncrease;
 import logic.instructions.api.synthetic.*;
 import logic.labels.FixedLabel;
 import logic.labels.Label;
+import logic.labels.NumericLabel;
+import logic.program.CompactProgram;
+import logic.program.InstructionRope;
+import logic.program.LinkedProgram;
 import logic.program.Program;
 import logic.program.SProgram;
 import logic.variables.Var;
@@ -15,43 +21,106 @@ import logic.variables.Variable;
 import logic.variables.VariableType;
 
 import java.util.*;
-
+import java.util.concurrent.*;
+
+/**
+ * Holds a loaded program and its expansions. Each degree is expanded at most once:
+ * the first caller runs the expansion and concurrent callers wait on the same future.
+ * Expansions run one at a time, since each one starts from the degree below it.
+ * A degree is linked only when it is run, so degrees that are only expanded or
+ * listed keep sharing their instructions with the degree below.
+ */
 public class ProgramManager {
-    private List<Program> programExpansions;
-    private LabelGenerator labelGenerator;
-    private Map<String, Variable> tempVarsMap;
+    private volatile Map<Integer, Future<Program>> programExpansions;
+    private final LabelGenerator labelGenerator;
+    private final Map<String, Variable> tempVarsMap;
+    private final Map<Program, FunctionTemplate> functionTemplates;
     private int currentTemps;
-    private int maxDegree;
+    private volatile int maxDegree;
+    private volatile boolean lazyCalls;
+    private volatile boolean parallelExpansion;
+    private volatile ExpansionCache expansionCache;
+
+    // instructions a parallel expansion task takes on before it stops splitting
+    private static final int CHUNK_SIZE = 1024;
 
 
     public ProgramManager(Map<String, Variable> tempVarsMap) {
         this.labelGenerator = new  LabelGenerator();
-        this.programExpansions = new ArrayList<Program>();
+        this.programExpansions = new ConcurrentHashMap<>();
         this.tempVarsMap = tempVarsMap;
+        this.functionTemplates = new IdentityHashMap<>();
         this.currentTemps = 0;
         this.maxDegree = 0;
     }
 
-    public void loadNewProgram(Program program) {
+    public synchronized void loadNewProgram(Program program) {
+        this.loadNewProgram(program, List.of());
+    }
+
+    /**
+     * Loads program with expansions already made for it, expansions.get(d - 1) being degree d.
+     * Their temps must be in the temps map already, so that higher degrees get new ones.
+     */
+    public synchronized void loadNewProgram(Program program, List<Program> precomputed) {
         this.clear();
-        programExpansions.add(program);
+        Map<Integer, Future<Program>> expansions = new ConcurrentHashMap<>();
+        expansions.put(0, CompletableFuture.completedFuture(program));
+        for (int d = 0; d < precomputed.size(); d++) {
+            expansions.put(d + 1, CompletableFuture.completedFuture(precomputed.get(d)));
+        }
         this.maxDegree = program.maxDegree();
+        programExpansions = expansions;
+    }
+
+    /**
+     * In lazy mode QUOTE stays a call stub in every degree. The stub's callee is linked
+     * the first time a run reaches it and kept for later runs, so call sites on branches
+     * that are never taken are never materialized. Changing the mode drops the expansions.
+     */
+    public synchronized void setLazyCalls(boolean lazy) {
+        if (lazy == lazyCalls) {
+            return;
+        }
+        lazyCalls = lazy;
+        Map<Integer, Future<Program>> expansions = new ConcurrentHashMap<>();
+        Future<Program> original = programExpansions.get(0);
+        if (original != null) {
+            expansions.put(0, original);
+        }
+        programExpansions = expansions;
+    }
+
+    public boolean isLazyCalls() {
+        return lazyCalls;
     }
 
-    public void clear() {
-        programExpansions.clear();
+    public synchronized void clear() {
+        programExpansions = new ConcurrentHashMap<>();
         labelGenerator.clear();
+        functionTemplates.clear();
         currentTemps = tempVarsMap.values()
                 .stream().max(Comparator.comparing(Variable::getNum))
                 .map(Variable::getNum).orElse(0);
         maxDegree = 0;
     }
 
-    private Variable generateTempVar() {
-        currentTemps++;
-        Variable newVar = new Var(VariableType.TEMP, currentTemps, 0);
-        tempVarsMap.put(newVar.getName(), newVar);
-        return newVar;
+    /**
+     * In parallel mode a degree with more than CHUNK_SIZE instructions is expanded in chunks
+     * on the common ForkJoinPool. The expansion is the same as the sequential one, with the
+     * same labels and temps, so changing the mode keeps the expansions made so far.
+     */
+    public void setParallelExpansion(boolean parallel) {
+        parallelExpansion = parallel;
+    }
+
+    public boolean isParallelExpansion() {
+        return parallelExpansion;
+    }
+
+    /** A program expanded to its highest degree from now on is stored in cache with all its degrees; null stops storing. */
+    public void setExpansionCache(ExpansionCache cache) {
+        expansionCache = cache;
     }
 
     public boolean isEmpty() {
@@ -63,70 +132,107 @@ public class ProgramManager {
     }
 
     public Program getProgram(int degree) {
-        if  (programExpansions.isEmpty()) {
+        return this.getProgram(programExpansions, degree);
+    }
+
+    private Program getProgram(Map<Integer, Future<Program>> expansions, int degree) {
+        if  (expansions.isEmpty()) {
             return null;
         }
         else {
             assert 0 <= degree && degree <= maxDegree;
-            if (degree >= programExpansions.size()) {
-                this.expand(degree);
+            Future<Program> future = expansions.get(degree);
+            if (future == null) {
+                FutureTask<Program> task = new FutureTask<>(() -> this.expandOnce(expansions, degree));
+                future = expansions.putIfAbsent(degree, task);
+                if (future == null) {
+                    future = task;
+                    task.run();
+                }
             }
-            return programExpansions.get(degree);
+            return await(future);
         }
     }
 
-
-    public int getProgramCycles(int degree) {
-        if  (programExpansions.isEmpty()) {
-            return 0;
-        }
-        else {
-            assert 0 <= degree && degree <= maxDegree;
-            if (degree >= programExpansions.size()) {
-                this.expand(degree);
+    private static Program await(Future<Program> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
-            return programExpansions.get(degree).cycles();
         }
     }
 
+
+    public int getProgramCycles(int degree) {
+        Program program = this.getProgram(degree);
+        return program == null ? 0 : program.cycles();
+    }
+
     public void printProgram(int degree) {
         assert 0 <= degree && degree <= maxDegree;
-        if (!programExpansions.isEmpty()) {
-            if (programExpansions.size() <= degree) {
-                this.expand(degree);
+        Program program = this.getProgram(degree);
+        if (program != null) {
+            CompactProgram compact = program.compact();
+            for (int row = 0; row < compact.size(); row++) {
+                System.out.println(compact.getRepresentation(row));
             }
-            programExpansions.get(degree)
-                    .getInstructions()
-                    .forEach(instr -> { System.out.println(instr.getRepresentation()); } );
         }
     }
 
-    public void runProgram(int degree) {
-        assert 0 <= degree && degree <= maxDegree;
-        if (!programExpansions.isEmpty()) {
-            if (programExpansions.size() <= degree) {
-                this.expand(degree);
+    public LinkedProgram getLinkedProgram(int degree) {
+        Program program = this.getProgram(degree);
+        return program == null ? null : program.link();
+    }
+
+    private Program expandOnce(Map<Integer, Future<Program>> expansions, int degree) {
+        // resolving the degree below first keeps the expansions in order
+        Program currentProgram = this.getProgram(expansions, degree - 1);
+
+        Program expanded;
+        boolean lazy;
+        synchronized (this) {
+            if (expansions != programExpansions) {
+                throw new IllegalStateException("Program was replaced while expanding it");
             }
-            programExpansions.get(degree).run();
+            expanded = this.expandProgram(currentProgram);
+            lazy = lazyCalls;
         }
-    }
 
-    private void expand(int degree) {
-        assert 0 <= degree && degree <= maxDegree;
-        while (degree + 1 > programExpansions.size()) {
-            this.expandOnce();
+        // the entry is written once, with every degree, when the highest one is reached
+        ExpansionCache cache = expansionCache;
+        if (cache != null && degree == maxDegree) {
+            List<Program> degrees = new ArrayList<>();
+            for (int d = 0; d < degree; d++) {
+                degrees.add(this.getProgram(expansions, d));
+            }
+            degrees.add(expanded);
+            cache.put(degrees, lazy);
         }
+        return expanded;
     }
 
-    private void expandOnce() {
-        Program currentProgram = programExpansions.getLast();
-        List<Instruction> currentInstructions = currentProgram.getInstructions();
-        List<Instruction> newInstructions = new ArrayList<>();
+    private Program expandProgram(Program currentProgram) {
+        InstructionRope stored = currentProgram.getInstructionRope();
+        InstructionRope.Builder newInstructions = new InstructionRope.Builder();
 
         labelGenerator.clear();
-        labelGenerator.loadInstructionLabels(currentInstructions);
+        labelGenerator.loadInstructionLabels(stored);
 
-        for (Instruction instr : currentInstructions) {
+        for (Instruction instr : stored) {
             List<Variable> instrVars = instr.getVars();
             for (Variable v : instrVars) {
                 if (v.getType() == VariableType.TEMP) {
@@ -135,25 +241,152 @@ public class ProgramManager {
             }
         }
 
+        int firstLabel = labelGenerator.getMaxLabel() + 1;
+        int firstTemp = currentTemps + 1;
+        List<List<Instruction>> chunked = null;
+        Reservation ids;
+        if (parallelExpansion && stored.size() > CHUNK_SIZE) {
+            ids = this.reserve(stored, firstLabel, firstTemp);
+            chunked = this.expandChunks(stored, ids);
+        } else {
+            ids = new Reservation(firstLabel, firstTemp);
+        }
+
+        // label n is first carried by newInstructions[labeled[n] - 1], emitted by stored[origins[n]]
+        int[] labeled = new int[ids.nextLabel];
+        int[] origins = new int[labeled.length];
+
         int lineNum = 1;
-        for (Instruction instr: currentInstructions) {
-            List<Instruction> expansion = this.expandInstruction(instr, lineNum);
+        for (int i = 0; i < stored.size(); i++) {
+            // chunks hand an unchanged instruction back as it is stored
+            Instruction instr = chunked != null ? stored.get(i) : source(stored, i);
+            List<Instruction> expansion = chunked != null
+                    ? chunked.get(i)
+                    : this.expandInstruction(instr, lineNum, ids);
+            for (int j = 0; j < expansion.size(); j++) {
+                if (!(expansion.get(j).getSelfLabel() instanceof NumericLabel label)) continue;
+
+                int n = label.getNum();
+                if (n >= labeled.length) {
+                    int size = Math.max(n + 1, labeled.length * 2);
+                    labeled = Arrays.copyOf(labeled, size);
+                    origins = Arrays.copyOf(origins, size);
+                }
+                if (labeled[n] == 0) {
+                    labeled[n] = lineNum + j;
+                    origins[n] = i;
+                } else {
+                    // the loader rejects shared labels, and each expansion takes fresh ones
+                    assert origins[n] == i : "Label " + label.getLabel() + " is defined more than once";
+                }
+            }
+
+            if (expansion.size() == 1 && expansion.get(0) == instr) {
+                newInstructions.keep(stored, i); // unchanged, shared with this degree
+            } else if (chunked != null) {
+                // chunks number their lines from 1, renumber them to their place in the program
+                for (int j = 0; j < expansion.size(); j++) {
+                    newInstructions.add(expansion.get(j).withNum(lineNum + j));
+                }
+            } else {
+                newInstructions.addAll(expansion);
+            }
             lineNum += expansion.size();
-            newInstructions.addAll(expansion);
         }
 
-        List<Label> currentLabels = labelGenerator.getLabels();
-        Map<Label, Instruction> newLabels = new HashMap<>();
-        for (Label label : currentLabels) {
-            newInstructions.stream()
-                    .filter(instr -> instr.getSelfLabel().equals(label))
-                    .findFirst().ifPresent(labeledInstr -> newLabels.put(label, labeledInstr));
+        for (int n = firstLabel; n < ids.nextLabel; n++) {
+            labelGenerator.addLabel(new NumericLabel(n));
         }
+        currentTemps = Math.max(currentTemps, ids.nextTemp - 1);
 
-        programExpansions.add(new SProgram(currentProgram.getName(), newLabels, newInstructions));
+        Map<Label, Integer> newLabels = new HashMap<>();
+        for (Label label : labelGenerator.getLabels()) {
+            if (label.getNum() < labeled.length && labeled[label.getNum()] != 0) {
+                newLabels.put(label, labeled[label.getNum()] - 1);
+            }
+        }
+
+        return new SProgram(currentProgram.getName(), newInstructions.build(), newLabels);
     }
 
-    private List<Instruction> expandInstruction(Instruction instr, int lineNum) {
+    /**
+     * The instruction at index as the expander reads it. A synthetic instruction is the parent
+     * of its expansion, so it is numbered by its line in this degree; basic instructions are
+     * passed on as stored, without a copy.
+     */
+    private static Instruction source(InstructionRope stored, int index) {
+        Instruction instr = stored.get(index);
+        return instr.getData().getInstructionType() == InstructionType.SYNTHETIC ? instr.withNum(index + 1) : instr;
+    }
+
+    /**
+     * First pass of a parallel expansion: counts the labels and temps every instruction
+     * takes and reserves each chunk the range the sequential expander would have given it.
+     * The reservation returned ends after the last range and holds the start of every chunk.
+     */
+    private Reservation reserve(InstructionRope instructions, int firstLabel, int firstTemp) {
+        Reservation ids = new Reservation(firstLabel, firstTemp);
+        for (int i = 0; i < instructions.size(); i++) {
+            if (i % CHUNK_SIZE == 0) {
+                ids.chunkStarts.add(new Reservation(ids.nextLabel, ids.nextTemp));
+            }
+            Instruction instr = instructions.get(i);
+            ids.nextLabel += this.labelsTakenBy(instr);
+            ids.nextTemp += this.tempsTakenBy(instr);
+        }
+        return ids;
+    }
+
+    private List<List<Instruction>> expandChunks(InstructionRope instructions, Reservation ids) {
+        List<List<Instruction>> expansions = new ArrayList<>(Collections.nCopies(instructions.size(), null));
+        int chunks = ids.chunkStarts.size();
+        ForkJoinPool.commonPool().invoke(new ExpandTask(instructions, expansions, ids.chunkStarts, 0, chunks));
+        return expansions;
+    }
+
+    /** Labels expandInstruction takes for instr; reserve counts with the same numbers. */
+    private int labelsTakenBy(Instruction instr) {
+        return switch (instr.getData()) {
+            case ZERO_VARIABLE, ASSIGNMENT, JUMP_ZERO, JUMP_EQUAL_CONSTANT, JUMP_EQUAL_VARIABLE -> 1;
+            // also builds the template here, so the chunks only read functionTemplates
+            case QUOTE -> lazyCalls ? 0 : this.templateOf((Quote) instr).getLabelCount();
+            default -> 0;
+        };
+    }
+
+    /** Temps expandInstruction takes for instr; reserve counts with the same numbers. */
+    private int tempsTakenBy(Instruction instr) {
+        return switch (instr.getData()) {
+            case GOTO_LABEL, JUMP_EQUAL_CONSTANT -> 1;
+            case JUMP_EQUAL_VARIABLE -> 2;
+            case QUOTE -> lazyCalls ? 0 : this.templateOf((Quote) instr).getTempCount();
+            default -> 0;
+        };
+    }
+
+    private FunctionTemplate templateOf(Quote qt) {
+        Program funcProg = ProgramRepository.get(qt.getFunctionName());
+        if (funcProg == null) {
+            throw new IllegalStateException("Function/program not found for QUOTE: " + qt.getFunctionName());
+        }
+        synchronized (functionTemplates) {
+            return functionTemplates.computeIfAbsent(funcProg, FunctionTemplate::of);
+        }
+    }
+
+    private List<Instruction> expandInstruction(Instruction instr, int lineNum, Reservation ids) {
+        int firstLabel = ids.nextLabel;
+        int firstTemp = ids.nextTemp;
+        List<Instruction> result = this.expand(instr, lineNum, ids);
+        // chunks start where reserve counted, so an expansion must take exactly what it counts
+        if (ids.nextLabel - firstLabel != this.labelsTakenBy(instr)
+                || ids.nextTemp - firstTemp != this.tempsTakenBy(instr)) {
+            throw new IllegalStateException("Expansion of " + instr.getData() + " took other labels or temps than reserved");
+        }
+        return result;
+    }
+
+    private List<Instruction> expand(Instruction instr, int lineNum, Reservation ids) {
         List<Instruction> result = new ArrayList<>();
         Label self = instr.getSelfLabel();
         //labelGenerator.addLabel(self);
@@ -161,7 +394,7 @@ public class ProgramManager {
         // ---- ZERO_VARIABLE ----
         if (instr instanceof ZeroVariable zv) {
             Variable v = zv.getVariable();
-            Label loop = labelGenerator.newLabel();
+            Label loop = ids.newLabel();
             result.add(new JumpNotZero(self, v, loop, lineNum++, instr));
             result.add(new Decrease(loop, v, lineNum++, instr));
             result.add(new JumpNotZero(FixedLabel.EMPTY, v, loop, lineNum, instr));
@@ -172,8 +405,8 @@ public class ProgramManager {
             Variable v = ca.getVariable();
             int k = ca.getConstant();
             result.add(new ZeroVariable(self, v, lineNum++, instr));
-            for (int i = 0; i < k; i++) {
-                result.add(new Increase(FixedLabel.EMPTY, v, lineNum++, instr));
+            if (k > 0) {
+                result.add(new RepeatedIncrease(FixedLabel.EMPTY, v, k, lineNum, instr));
             }
         }
 
@@ -181,7 +414,7 @@ public class ProgramManager {
         else if (instr instanceof Assignment asg) {
             Variable x = asg.getX();
             Variable y = asg.getY();
-            Label loop = labelGenerator.newLabel();
+            Label loop = ids.newLabel();
             result.add(new ZeroVariable(self, x, lineNum++, instr));
             result.add(new JumpNotZero(FixedLabel.EMPTY, y, loop, lineNum++, instr));
             result.add(new Decrease(loop, y, lineNum++, instr));
@@ -192,7 +425,7 @@ public class ProgramManager {
         // ---- GOTO_LABEL ----
         else if (instr instanceof GoToLabel gtl) {
             Label target = gtl.getTargetLabel();
-            Variable dummy = this.generateTempVar();
+            Variable dummy = ids.newTemp();
             result.add(new Increase(self, dummy, lineNum++, instr));      // dummy = 1
             result.add(new JumpNotZero(FixedLabel.EMPTY, dummy, target, lineNum, instr));
         }
@@ -201,7 +434,7 @@ public class ProgramManager {
         else if (instr instanceof JumpZero jz) {
             Variable v = jz.getVariable();
             Label target = jz.getTargetLabel();
-            Label skip = labelGenerator.newLabel();
+            Label skip = ids.newLabel();
             result.add(new JumpNotZero(self, v, skip, lineNum++, instr));
             result.add(new GoToLabel(FixedLabel.EMPTY, target, lineNum++, instr));
             result.add(new Neutral(skip, v, lineNum, instr)); // skip:
@@ -213,11 +446,11 @@ public class ProgramManager {
             int k = jec.getConstant();
             Label target = jec.getTargetLabel();
 
-            Variable tmp = this.generateTempVar();
+            Variable tmp = ids.newTemp();
             result.add(new Assignment(self, tmp, v, lineNum++, instr));
             result.add(new ConstantAssignment(FixedLabel.EMPTY, tmp, k, lineNum++, instr));
             // subtract tmp - k loop
-            Label loop = labelGenerator.newLabel();
+            Label loop = ids.newLabel();
             result.add(new JumpNotZero(FixedLabel.EMPTY, tmp, loop, lineNum++, instr));
             result.add(new Decrease(loop, tmp, lineNum++, instr));
             result.add(new JumpNotZero(FixedLabel.EMPTY, tmp, loop, lineNum++, instr));
@@ -230,12 +463,12 @@ public class ProgramManager {
             Variable v2 = jev.getVar2();
             Label target = jev.getTargetLabel();
 
-            Variable t1 = this.generateTempVar();
-            Variable t2 = this.generateTempVar();
+            Variable t1 = ids.newTemp();
+            Variable t2 = ids.newTemp();
             result.add(new Assignment(self, t1, v1, lineNum++, instr));
             result.add(new Assignment(FixedLabel.EMPTY, t2, v2, lineNum++, instr));
 
-            Label loop = labelGenerator.newLabel();
+            Label loop = ids.newLabel();
             result.add(new JumpNotZero(FixedLabel.EMPTY, t2, loop, lineNum++, instr));
             result.add(new Decrease(loop, t1, lineNum++, instr));
             result.add(new Decrease(FixedLabel.EMPTY, t2, lineNum++, instr));
@@ -243,16 +476,9 @@ public class ProgramManager {
             result.add(new JumpZero(FixedLabel.EMPTY, t1, target, lineNum, instr));
         }
         // ---- QUOTE (Function inlining) ----
-        else if (instr instanceof logic.instructions.api.synthetic.Quote qt) {
-            String fname = qt.getFunctionName();
+        else if (instr instanceof Quote qt && !lazyCalls) {
             String fargs = qt.getFunctionArguments(); // comma separated
-            Variable targetVar = qt.getTarget(); // V
-
-            // find function program
-            Program funcProg = execute.components.ProgramRepository.get(fname);
-            if (funcProg == null) {
-                throw new IllegalStateException("Function/program not found for QUOTE: " + fname);
-            }
+            FunctionTemplate template = this.templateOf(qt);
 
             // parse provided args to names (may be empty)
             List<String> providedArgs = List.of();
@@ -263,178 +489,96 @@ public class ProgramManager {
                         .toList();
             }
 
-            // 1) collect all variables used in function program
-            Set<Variable> funcVars = new LinkedHashSet<>();
-            for (Instruction fi : funcProg.getInstructions()) {
-                funcVars.addAll(fi.getVars());
+            Variable[] temps = new Variable[template.getTempCount()];
+            for (int i = 0; i < template.getOwnTempCount(); i++) {
+                temps[i] = ids.newTemp();
             }
-
-            // maps from original func var -> new var in host (P)
-            Map<String, Variable> varMap = new HashMap<>();
-            // We will map inputs in order of appearance to providedArgs
-            List<Variable> funcInputVars = new ArrayList<>();
-            Variable funcOutputVar = null;
-
-            for (Variable fv : funcVars) {
-                if (fv.getType() == VariableType.INPUT) funcInputVars.add(fv);
-                else if (fv.getType() == VariableType.OUTPUT) funcOutputVar = fv;
+            Label[] labels = new Label[template.getLabelCount()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = ids.newLabel();
             }
 
-            // create temp variables in host for each func var
-            // inputs -> zi (we will initialize them from providedArgs)
-            for (Variable inVar : funcInputVars) {
-                Variable newTemp = generateTempVar();
-                varMap.put(inVar.getName(), newTemp);
-            }
-
-            // create temps for other temps in function
-            for (Variable fv : funcVars) {
-                if (fv.getType() == VariableType.TEMP) {
-                    if (!varMap.containsKey(fv.getName())) {
-                        Variable newTemp = generateTempVar();
-                        varMap.put(fv.getName(), newTemp);
-                    }
-                }
+            // the inputs are initialized from the provided args in order, missing ones are zeroed
+            List<Variable> arguments = new ArrayList<>();
+            for (int i = 0; i < template.getInputCount(); i++) {
+                arguments.add(i < providedArgs.size()
+                        ? tempVarsMap.computeIfAbsent(providedArgs.get(i), Var::new)
+                        : null);
             }
 
-            // output y -> zy
-            Variable zy = null;
-            if (funcOutputVar != null) {
-                zy = generateTempVar();
-                varMap.put(funcOutputVar.getName(), zy);
-            }
-
-            // 2) prepare label mapping: collect labels from function
-            execute.components.LabelGenerator funcLabelGen = new execute.components.LabelGenerator();
-            funcLabelGen.loadInstructionLabels(funcProg.getInstructions());
-            List<Label> funcLabels = funcLabelGen.getLabels();
-            Map<Label, Label> labelMap = new HashMap<>();
-            for (Label l : funcLabels) {
-                labelMap.put(l, labelGenerator.newLabel());
-            }
-
-            // create Lend label for EXIT replacement
-            Label Lend = labelGenerator.newLabel();
-
-            // 3) add initial assignments zi <- Vi
-            // providedArgs correspond to funcInputVars in order
-            for (int i = 0; i < funcInputVars.size(); i++) {
-                Variable origInput = funcInputVars.get(i);
-                Variable mapped = varMap.get(origInput.getName());
-                String srcName = (i < providedArgs.size()) ? providedArgs.get(i) : "0";
-                // src variable could be a variable in host (input or temp); fetch or create
-                Variable srcVar = tempVarsMap.getOrDefault(srcName, null);
-                if (srcVar == null) {
-                    srcVar = tempVarsMap.containsKey(srcName) ? tempVarsMap.get(srcName) : tempVarsMap.get(srcName);
-                }
-                // If not found in temp map, check inputVars in caller? we don't have direct access here.
-                // Simpler approach: try to create a Var placeholder (will be added to tempVarsMap)
-                if (srcVar == null) {
-                    srcVar = new Var(srcName);
-                    tempVarsMap.put(srcName, srcVar);
-                }
-                // zi <- srcVar  -> implemented as Assignment(mapped, srcVar)
-                result.add(new logic.instructions.api.synthetic.Assignment(self, mapped, srcVar, lineNum++, instr));
+            for (int i = template.getOwnTempCount(); i < temps.length; i++) {
+                temps[i] = ids.newTemp();
             }
+            result.addAll(template.instantiate(instr, self, arguments, qt.getTarget(), temps, labels, lineNum));
+        }
 
-            // 4) translate and append function instructions
-            for (Instruction finstr : funcProg.getInstructions()) {
-                Label origSelf = finstr.getSelfLabel();
-                Label mappedSelf = labelMap.getOrDefault(origSelf, FixedLabel.EMPTY);
-                // handle target label mapping for instructions that have targets
-                Label targ = finstr.getTargetLabel();
-                Label mappedTarget = labelMap.getOrDefault(targ, targ); // if EXIT, will be handled below
-
-                // replace Exit label usage: if target is EXIT we map to Lend
-                if (targ.equals(FixedLabel.EXIT)) {
-                    mappedTarget = Lend;
-                }
 
-                // replace variables of finstr
-                List<Variable> newVars = new ArrayList<>();
-                for (Variable fv : finstr.getVars()) {
-                    Variable nv = varMap.get(fv.getName());
-                    if (nv == null) {
-                        // if not mapped — create temp
-                        nv = generateTempVar();
-                        varMap.put(fv.getName(), nv);
-                    }
-                    newVars.add(nv);
-                }
-
-                // Recreate the instruction by type (pattern similar to createInstruction)
-                Instruction newInstr = null;
-                if (finstr instanceof logic.instructions.api.basic.Increase) {
-                    newInstr = new logic.instructions.api.basic.Increase(mappedSelf, newVars.get(0), lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.basic.Decrease) {
-                    newInstr = new logic.instructions.api.basic.Decrease(mappedSelf, newVars.get(0), lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.basic.JumpNotZero) {
-                    newInstr = new logic.instructions.api.basic.JumpNotZero(mappedSelf, newVars.get(0), mappedTarget, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.basic.Neutral) {
-                    newInstr = new logic.instructions.api.basic.Neutral(mappedSelf, newVars.get(0), lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.ZeroVariable) {
-                    newInstr = new logic.instructions.api.synthetic.ZeroVariable(mappedSelf, newVars.get(0), lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.GoToLabel) {
-                    newInstr = new logic.instructions.api.synthetic.GoToLabel(mappedSelf, mappedTarget, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.Assignment) {
-                    // note original Assignment holds (target X, source Y)
-                    Variable av = newVars.get(0);
-                    Variable bv = newVars.size() > 1 ? newVars.get(1) : av;
-                    newInstr = new logic.instructions.api.synthetic.Assignment(mappedSelf, av, bv, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.ConstantAssignment) {
-                    int k = finstr.getConst();
-                    newInstr = new logic.instructions.api.synthetic.ConstantAssignment(mappedSelf, newVars.get(0), k, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.JumpZero) {
-                    newInstr = new logic.instructions.api.synthetic.JumpZero(mappedSelf, newVars.get(0), mappedTarget, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.JumpEqualConstant) {
-                    int k = finstr.getConst();
-                    newInstr = new logic.instructions.api.synthetic.JumpEqualConstant(mappedSelf, newVars.get(0), k, mappedTarget, lineNum++, instr);
-                } else if (finstr instanceof logic.instructions.api.synthetic.JumpEqualVariable) {
-                    // expect var1,var2
-                    Variable vv1 = newVars.get(0);
-                    Variable vv2 = newVars.size() > 1 ? newVars.get(1) : vv1;
-                    newInstr = new logic.instructions.api.synthetic.JumpEqualVariable(mappedSelf, vv1, vv2, mappedTarget, lineNum++, instr);
-                }
-                // ---- JUMP_EQUAL_FUNCTION ----
-                else if (instr instanceof JumpEqualFunction jef) {
-                    Variable v = jef.getV();
-                    Variable temp = jef.getTemp();
-                    String functionName = jef.getFunctionName();
-                    String functionArguments = jef.getFunctionArguments();
-                    Label target = jef.getJumpLabel();
-
-                    // 1) הרצת הפונקציה וכתיבה ל-temp
-                    result.add(new logic.instructions.api.synthetic.Quote(self, temp, functionName, functionArguments, lineNum++, instr));
-
-                    // 2) השוואת v עם temp ויצירת קפיצה
-                    Label loop = labelGenerator.newLabel();
-                    result.add(new JumpEqualVariable(self, v, temp, target, lineNum++, instr));
-                }
+        else {
+            result.add(instr);
+        }
 
+        return result;
+    }
 
-                else {
-                    // fallback: keep original (but replace labels/vars references where possible)
-                    newInstr = finstr;
-                }
+    /** Label numbers and temp indexes handed out in order, starting from a reserved point. */
+    private class Reservation {
+        private int nextLabel;
+        private int nextTemp;
+        private final List<Reservation> chunkStarts = new ArrayList<>();
 
-                result.add(newInstr);
-            }
-
-            // 5) after function, add assignment zy -> targetVar (if zy exists)
-            if (zy != null && targetVar != null) {
-                result.add(new logic.instructions.api.synthetic.Assignment(FixedLabel.EMPTY, targetVar, zy, lineNum++, instr));
-            }
+        Reservation(int nextLabel, int nextTemp) {
+            this.nextLabel = nextLabel;
+            this.nextTemp = nextTemp;
+        }
 
-            // 6) add the Lend label as a neutral instruction to be the join point
-            result.add(new logic.instructions.api.basic.Neutral(Lend, zy != null ? zy : new Var("0"), lineNum, instr));
+        Label newLabel() {
+            return new NumericLabel(nextLabel++);
         }
 
+        Variable newTemp() {
+            Variable newVar = new Var(VariableType.TEMP, nextTemp++, 0);
+            tempVarsMap.put(newVar.getName(), newVar);
+            return newVar;
+        }
+    }
 
-        else {
-            result.add(instr);
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class ExpandTask extends RecursiveAction {
+        private final InstructionRope instructions;
+        private final List<List<Instruction>> expansions;
+        private final List<Reservation> chunkStarts;
+        private final int from;
+        private final int to;
+
+        ExpandTask(InstructionRope instructions, List<List<Instruction>> expansions,
+                   List<Reservation> chunkStarts, int from, int to) {
+            this.instructions = instructions;
+            this.expansions = expansions;
+            this.chunkStarts = chunkStarts;
+            this.from = from;
+            this.to = to;
         }
 
-        return result;
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Reservation ids = chunkStarts.get(from);
+                int end = Math.min(instructions.size(), (from + 1) * CHUNK_SIZE);
+                int lineNum = 1;
+                for (int i = from * CHUNK_SIZE; i < end; i++) {
+                    Instruction instr = source(instructions, i);
+                    List<Instruction> expansion = expandInstruction(instr, lineNum, ids);
+                    if (expansion.size() == 1 && expansion.get(0) == instr) {
+                        expansion = List.of(instructions.get(i));
+                    }
+                    expansions.set(i, expansion);
+                    lineNum += expansion.size();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExpandTask(instructions, expansions, chunkStarts, from, middle),
+                    new ExpandTask(instructions, expansions, chunkStarts, middle, to));
+        }
     }
-
 }
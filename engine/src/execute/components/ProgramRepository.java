@@ -2,11 +2,15 @@ package execute.components;
 
 import logic.program.Program;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Programs and functions by name, for QUOTE and JUMP_EQUAL_FUNCTION to find their callee.
+ * Loads register into it while runs and expansions on other threads read it.
+ */
 public class ProgramRepository {
-    private static final Map<String, Program> repo = new HashMap<>();
+    private static final Map<String, Program> repo = new ConcurrentHashMap<>();
 
     public static void register(Program p) {
         if (p != null && p.getName() != null) {
@@ -15,7 +19,7 @@ public class ProgramRepository {
     }
 
     public static Program get(String name) {
-        return repo.get(name);
+        return name == null ? null : repo.get(name);
     }
 
     public static void clear() {
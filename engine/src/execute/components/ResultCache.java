@@ -0,0 +1,93 @@
+package execute.components;
+
+import execute.dto.RunResult;
+import logic.program.RunOptions;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of completed runs, keyed by program fingerprint, degree and input vector.
+ */
+public class ResultCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<Key, RunResult> entries;
+    private long hits;
+    private long misses;
+
+    public ResultCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ResultCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RunResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Returns the cached result, or null; counts a hit or a miss. */
+    public RunResult get(String fingerprint, int degree, long[] inputs) {
+        return this.get(fingerprint, degree, inputs, RunOptions.NONE);
+    }
+
+    /**
+     * Returns the cached result if a run under options would have completed it too, or null;
+     * counts a hit or a miss. A deadline or a token does not change the result of a run.
+     */
+    public synchronized RunResult get(String fingerprint, int degree, long[] inputs, RunOptions options) {
+        RunResult result = entries.get(new Key(fingerprint, degree, inputs));
+        if (result != null && !options.allows(result.getCycles(), result.getSteps())) {
+            result = null;
+        }
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    public synchronized void put(String fingerprint, int degree, long[] inputs, RunResult result) {
+        entries.put(new Key(fingerprint, degree, inputs.clone()), result);
+    }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static class Key {
+        private final String fingerprint;
+        private final int degree;
+        private final long[] inputs;
+
+        Key(String fingerprint, int degree, long[] inputs) {
+            this.fingerprint = fingerprint;
+            this.degree = degree;
+            this.inputs = inputs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return degree == key.degree && fingerprint.equals(key.fingerprint) && Arrays.equals(inputs, key.inputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, degree, Arrays.hashCode(inputs));
+        }
+    }
+}
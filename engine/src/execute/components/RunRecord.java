@@ -7,19 +7,29 @@ public class RunRecord {
     private final int degree;
     private final List<Long> inputs;
     private final long resultY;
-    private final int cycles;
+    private final long cycles;
+    private final long steps;
+    private final boolean fromCache;
 
-    public RunRecord(int runId, int degree, List<Long> inputs, long resultY, int cycles) {
+    public RunRecord(int runId, int degree, List<Long> inputs, long resultY, long cycles, long steps) {
+        this(runId, degree, inputs, resultY, cycles, steps, false);
+    }
+
+    public RunRecord(int runId, int degree, List<Long> inputs, long resultY, long cycles, long steps, boolean fromCache) {
         this.runId = runId;
         this.degree = degree;
         this.inputs = inputs;
         this.resultY = resultY;
         this.cycles = cycles;
+        this.steps = steps;
+        this.fromCache = fromCache;
     }
 
     public int getRunId() { return runId; }
     public int getDegree() { return degree; }
     public List<Long> getInputs() { return inputs; }
     public long getResultY() { return resultY; }
-    public int getCycles() { return cycles; }
+    public long getCycles() { return cycles; }
+    public long getSteps() { return steps; }
+    public boolean isFromCache() { return fromCache; }
 }
@@ -0,0 +1,217 @@
+package execute.components;
+
+import logic.instructions.Instruction;
+import logic.instructions.InstructionData;
+import logic.instructions.api.basic.*;
+import logic.instructions.api.synthetic.*;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.program.InstructionRope;
+import logic.program.LazyProgram;
+import logic.program.Program;
+import logic.program.SProgram;
+import logic.variables.Var;
+import logic.variables.Variable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static execute.components.SemuWriter.*;
+
+/**
+ * Reads a .semu file written by SemuWriter through a memory-mapped buffer. Opening it
+ * reads the strings and the program headers only; every program and every degree is
+ * handed out as a Program that decodes its rows the first time it is used, so functions
+ * that are never called and degrees that are never shown never build an Instruction.
+ * The file's checksum is verified when it is opened. The program and its functions are
+ * registered in ProgramRepository, as XmlLoader does.
+ */
+public class SemuReader {
+    private static final InstructionData[] DATA = InstructionData.values();
+
+    private final MappedByteBuffer buffer;
+    private final String[] strings;
+    private final boolean lazyCalls;
+    private final List<MappedProgram> degrees;
+
+    private SemuReader(MappedByteBuffer buffer, Map<String, Variable> varsMap, boolean register) {
+        this.buffer = buffer;
+        if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a .semu file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported .semu version: " + buffer.getInt(4));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, buffer.limit() - 4));
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IllegalArgumentException("Corrupt .semu file: checksum mismatch");
+        }
+        this.lazyCalls = (buffer.getInt(8) & FLAG_LAZY_CALLS) != 0;
+
+        buffer.position(12);
+        this.strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // the first program is the one loaded, its variables go to varsMap
+        int programCount = buffer.getInt();
+        List<MappedProgram> main = null;
+        List<Program> programs = new ArrayList<>();
+        for (int p = 0; p < programCount; p++) {
+            List<MappedProgram> programDegrees = this.readProgram(p == 0 ? varsMap : new HashMap<>());
+            programs.add(programDegrees.get(0));
+            if (p == 0) {
+                main = programDegrees;
+            }
+        }
+        this.degrees = main;
+        if (register) { // only once every header is read, as XmlLoader does
+            programs.forEach(ProgramRepository::register);
+        }
+    }
+
+    public static SemuReader open(String filePath, Map<String, Variable> varsMap) throws IOException {
+        return open(filePath, varsMap, true);
+    }
+
+    /** Opens filePath, registering its programs in ProgramRepository only if register is set. */
+    public static SemuReader open(String filePath, Map<String, Variable> varsMap, boolean register) throws IOException {
+        if (!filePath.toLowerCase().endsWith(".semu")) {
+            throw new IllegalArgumentException("File is not a .semu file: " + filePath);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new SemuReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), varsMap, register);
+        }
+    }
+
+    /** The program as loaded, degree 0. */
+    public Program getProgram() {
+        return degrees.get(0);
+    }
+
+    /** The expansions stored with the program, degree 1 first. */
+    public List<Program> getExpansions() {
+        return new ArrayList<>(degrees.subList(1, degrees.size()));
+    }
+
+    /** Whether the stored expansions kept QUOTE as call stubs. */
+    public boolean isLazyCalls() {
+        return lazyCalls;
+    }
+
+    private List<MappedProgram> readProgram(Map<String, Variable> varsMap) {
+        String name = strings[buffer.getInt()];
+        Variable[] variables = new Variable[buffer.getInt()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = varsMap.computeIfAbsent(strings[buffer.getInt()], Var::new);
+        }
+
+        List<MappedProgram> result = new ArrayList<>();
+        int degreeCount = buffer.getInt();
+        for (int d = 0; d < degreeCount; d++) {
+            int rowCount = buffer.getInt();
+            long offset = buffer.getLong();
+            MappedProgram below = d == 0 ? null : result.get(d - 1);
+            result.add(new MappedProgram(name, variables, (int) offset, rowCount, below));
+        }
+        return result;
+    }
+
+    private Label label(int string) {
+        return string == NONE ? FixedLabel.EMPTY : XmlLoader.parseLabel(strings[string]);
+    }
+
+    /** One degree of a stored program, decoded when it is first used. */
+    private class MappedProgram extends LazyProgram {
+        private final Variable[] variables;
+        private final int offset;
+        private final int rowCount;
+        private final MappedProgram below;
+        private Instruction[] numbered; // this degree's instructions as its expansions name them as parents
+
+        MappedProgram(String name, Variable[] variables, int offset, int rowCount, MappedProgram below) {
+            super(name);
+            this.variables = variables;
+            this.offset = offset;
+            this.rowCount = rowCount;
+            this.below = below;
+        }
+
+        @Override
+        protected Program build() {
+            return this.decode();
+        }
+
+        private SProgram decode() {
+            InstructionRope.Builder instructions = new InstructionRope.Builder();
+            Map<Label, Integer> labels = new HashMap<>();
+            for (int i = 0; i < rowCount; i++) {
+                int at = offset + 4 * ROW_INTS * i;
+                int data = buffer.getInt(at);
+                Instruction instr;
+                if (data == KEPT) {
+                    int row = buffer.getInt(at + 32);
+                    InstructionRope stored = below.program().getInstructionRope();
+                    instructions.keep(stored, row);
+                    instr = stored.get(row);
+                } else {
+                    Instruction parent = buffer.getInt(at + 32) == NONE ? null : below.parentAt(buffer.getInt(at + 32));
+                    instr = this.instruction(DATA[data], at, i + 1, parent);
+                    instructions.add(instr);
+                }
+                if (instr.getSelfLabel() != FixedLabel.EMPTY) {
+                    labels.putIfAbsent(instr.getSelfLabel(), i);
+                }
+            }
+            return new SProgram(getName(), instructions.build(), labels);
+        }
+
+        private synchronized Instruction parentAt(int row) {
+            if (numbered == null) {
+                numbered = new Instruction[rowCount];
+            }
+            if (numbered[row] == null) {
+                numbered[row] = this.program().getInstructionRope().get(row).withNum(row + 1);
+            }
+            return numbered[row];
+        }
+
+        private Instruction instruction(InstructionData data, int at, int num, Instruction parent) {
+            Label self = label(buffer.getInt(at + 4));
+            Label target = label(buffer.getInt(at + 8));
+            Variable v = buffer.getInt(at + 12) == NONE ? null : variables[buffer.getInt(at + 12)];
+            Variable w = buffer.getInt(at + 16) == NONE ? null : variables[buffer.getInt(at + 16)];
+            int k = buffer.getInt(at + 20);
+            String function = buffer.getInt(at + 24) == NONE ? null : strings[buffer.getInt(at + 24)];
+            String arguments = buffer.getInt(at + 28) == NONE ? null : strings[buffer.getInt(at + 28)];
+
+            return switch (data) {
+                case INCREASE -> new Increase(self, v, num, parent);
+                case DECREASE -> new Decrease(self, v, num, parent);
+                case JUMP_NOT_ZERO -> new JumpNotZero(self, v, target, num, parent);
+                case NO_OP -> new Neutral(self, v, num, parent);
+                case REPEATED_INCREASE -> new RepeatedIncrease(self, v, k, num, parent);
+                case ZERO_VARIABLE -> new ZeroVariable(self, v, num, parent);
+                case GOTO_LABEL -> new GoToLabel(self, target, num, parent);
+                case ASSIGNMENT -> new Assignment(self, v, w, num, parent);
+                case CONSTANT_ASSIGNMENT -> new ConstantAssignment(self, v, k, num, parent);
+                case JUMP_ZERO -> new JumpZero(self, v, target, num, parent);
+                case JUMP_EQUAL_CONSTANT -> new JumpEqualConstant(self, v, k, target, num, parent);
+                case JUMP_EQUAL_VARIABLE -> new JumpEqualVariable(self, v, w, target, num, parent);
+                case QUOTE -> new Quote(self, v, function, arguments, num, parent);
+                case JUMP_EQUAL_FUNCTION -> new JumpEqualFunction(self, v, w, function, arguments, target, num, parent);
+            };
+        }
+    }
+}
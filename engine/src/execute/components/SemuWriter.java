@@ -0,0 +1,208 @@
+package execute.components;
+
+import logic.instructions.Instruction;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.labels.FixedLabel;
+import logic.program.InstructionRope;
+import logic.program.Program;
+import logic.variables.Variable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a program to the binary .semu format read by SemuReader: the program and its
+ * expansions, followed by every function it calls from ProgramRepository. All numbers
+ * are big-endian ints, offsets are longs.
+ *
+ * <pre>
+ * "SEMU" version flags
+ * strings:   count, then length and UTF-8 bytes of each
+ * programs:  count, then for each: name, variable count and names,
+ *            degree count, then row count and row offset of each degree
+ * rows:      ROW_INTS ints per instruction
+ * CRC32 of everything before it
+ * </pre>
+ *
+ * A row holds the instruction's data ordinal, its label, target label, variables,
+ * constant, called function and arguments, and the row of the degree below it was
+ * expanded from. A row with data KEPT is the instruction of that row, unchanged.
+ */
+public class SemuWriter {
+    static final int MAGIC = 0x53454D55; // "SEMU"
+    static final int VERSION = 2;
+    static final int FLAG_LAZY_CALLS = 1;
+
+    static final int ROW_INTS = 9;
+    static final int KEPT = -1;
+    static final int NONE = -1;
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final List<int[]> programHeaders = new ArrayList<>();
+    private final List<List<int[]>> programRows = new ArrayList<>();
+
+    /**
+     * Writes degrees, where degrees.get(d) is the program expanded to degree d.
+     * lazyCalls tells whether the expansions kept QUOTE as call stubs.
+     */
+    public static void write(String filePath, List<Program> degrees, boolean lazyCalls) throws IOException {
+        if (degrees.isEmpty()) {
+            throw new IllegalArgumentException("No program to write");
+        }
+        SemuWriter writer = new SemuWriter();
+        writer.addProgram(degrees);
+        for (Program function : functionsOf(degrees.get(0))) {
+            writer.addProgram(List.of(function));
+        }
+
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            writer.writeTo(new DataOutputStream(new CheckedOutputStream(out, crc)), lazyCalls ? FLAG_LAZY_CALLS : 0);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    /**
+     * The functions program calls, directly, inside call arguments or through other
+     * functions, in the order they are first met.
+     */
+    private static List<Program> functionsOf(Program program) {
+        Map<String, Program> found = new LinkedHashMap<>();
+        Deque<Program> pending = new ArrayDeque<>(List.of(program));
+        while (!pending.isEmpty()) {
+            for (Instruction instr : pending.poll().getInstructionRope()) {
+                for (String name : ProgramFingerprint.calledFunctions(instr)) {
+                    Program function = ProgramRepository.get(name);
+                    if (function != null && function != program && !found.containsKey(name)) {
+                        found.put(name, function);
+                        pending.add(function);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private void addProgram(List<Program> degrees) {
+        Map<Variable, Integer> variables = new LinkedHashMap<>();
+        List<int[]> rows = new ArrayList<>();
+        int[] rowCounts = new int[degrees.size()];
+
+        InstructionRope previous = null;
+        Map<Instruction, Integer> previousRows = Map.of();
+        for (int d = 0; d < degrees.size(); d++) {
+            InstructionRope stored = degrees.get(d).getInstructionRope();
+            Map<Instruction, Integer> storedRows = new IdentityHashMap<>();
+            for (int i = 0; i < stored.size(); i++) {
+                Instruction instr = stored.get(i);
+                storedRows.putIfAbsent(instr, i);
+                Integer kept = previousRows.get(instr);
+                if (kept != null) {
+                    rows.add(new int[] { KEPT, NONE, NONE, NONE, NONE, 0, NONE, NONE, kept });
+                } else {
+                    // an expanded instruction's parent is the line of the degree below it came from
+                    int parent = previous == null || instr.getParent() == null ? NONE : instr.getParent().getNum() - 1;
+                    rows.add(this.row(instr, variables, parent));
+                }
+            }
+            rowCounts[d] = stored.size();
+            previous = stored;
+            previousRows = storedRows;
+        }
+
+        int[] header = new int[3 + variables.size() + rowCounts.length];
+        header[0] = this.string(degrees.get(0).getName());
+        header[1] = variables.size();
+        int v = 2;
+        for (Variable variable : variables.keySet()) {
+            header[v++] = this.string(variable.getName());
+        }
+        header[v++] = rowCounts.length;
+        System.arraycopy(rowCounts, 0, header, v, rowCounts.length);
+        programHeaders.add(header);
+        programRows.add(rows);
+    }
+
+    private int[] row(Instruction instr, Map<Variable, Integer> variables, int parent) {
+        List<Variable> vars = instr.getVars();
+        String function = null;
+        String arguments = null;
+        if (instr instanceof Quote qt) {
+            function = qt.getFunctionName();
+            arguments = qt.getFunctionArguments();
+        } else if (instr instanceof JumpEqualFunction jef) {
+            function = jef.getFunctionName();
+            arguments = jef.getFunctionArguments();
+        }
+        return new int[] {
+                instr.getData().ordinal(),
+                this.label(instr.getSelfLabel().getLabel()),
+                this.label(instr.getTargetLabel().getLabel()),
+                vars.isEmpty() ? NONE : variables.computeIfAbsent(vars.get(0), k -> variables.size()),
+                vars.size() < 2 ? NONE : variables.computeIfAbsent(vars.get(1), k -> variables.size()),
+                instr.getConst(),
+                function == null ? NONE : this.string(function),
+                arguments == null ? NONE : this.string(arguments),
+                parent
+        };
+    }
+
+    private int label(String name) {
+        return name.equals(FixedLabel.EMPTY.getLabel()) ? NONE : this.string(name);
+    }
+
+    private int string(String value) {
+        return strings.computeIfAbsent(value, k -> strings.size());
+    }
+
+    private void writeTo(DataOutputStream out, int flags) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(flags);
+
+        long position = 12;
+        out.writeInt(strings.size());
+        position += 4;
+        for (String value : strings.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            position += 4 + bytes.length;
+        }
+
+        // each degree in the header takes a row count and an 8 byte offset
+        out.writeInt(programHeaders.size());
+        position += 4;
+        for (int[] header : programHeaders) {
+            int degrees = header[header[1] + 2];
+            position += 4L * (header.length - degrees) + 12L * degrees;
+        }
+
+        long rowsStart = position;
+        for (int p = 0; p < programHeaders.size(); p++) {
+            int[] header = programHeaders.get(p);
+            int degreeAt = header[1] + 2;
+            for (int i = 0; i <= degreeAt; i++) {
+                out.writeInt(header[i]);
+            }
+            for (int d = 0; d < header[degreeAt]; d++) {
+                int rowCount = header[degreeAt + 1 + d];
+                out.writeInt(rowCount);
+                out.writeLong(rowsStart);
+                rowsStart += 4L * ROW_INTS * rowCount;
+            }
+        }
+
+        for (List<int[]> rows : programRows) {
+            for (int[] row : rows) {
+                for (int value : row) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+}
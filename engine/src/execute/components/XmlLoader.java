@@ -6,19 +6,42 @@ import logic.instructions.api.synthetic.*;
 import logic.labels.FixedLabel;
 import logic.labels.Label;
 import logic.labels.NumericLabel;
+import logic.program.CancellationToken;
+import logic.program.LazyProgram;
 import logic.program.Program;
 import logic.program.SProgram;
 import logic.variables.Var;
 import logic.variables.Variable;
-import org.w3c.dom.*;
 
-import javax.xml.parsers.*;
-import java.io.File;
+import javax.xml.stream.*;
+import java.io.*;
 import java.util.*;
-
+import java.util.concurrent.CancellationException;
+
+/**
+ * Loads a program from XML in one forward pass over a StAX stream, so memory grows with
+ * the instructions built and not with the document. Errors name the line and column of
+ * the instruction they come from. Jump targets that are not defined yet are kept in a
+ * forward reference table with their first use and are resolved as labels are defined.
+ * Each S-Function is registered in ProgramRepository under its own name once the whole
+ * document is read, and is only built, with variables of its own, the first time
+ * something uses it.
+ */
 public class XmlLoader {
 
+    // instructions read between two progress reports
+    private static final int REPORT_EVERY = 1024;
+
     public static Program parse(String filePath, Map<String, Variable> varsMap) throws Exception {
+        return parse(filePath, varsMap, LoadListener.NONE, new CancellationToken());
+    }
+
+    /**
+     * Parses filePath, reporting the bytes read and instructions built to listener as it goes.
+     * Throws CancellationException if token is cancelled before the parse ends.
+     */
+    public static Program parse(String filePath, Map<String, Variable> varsMap,
+                                LoadListener listener, CancellationToken token) throws Exception {
         File file = new File(filePath);
         if (!file.exists()) {
             throw new IllegalArgumentException("File does not exist: " + filePath);
@@ -27,87 +50,260 @@ public class XmlLoader {
             throw new IllegalArgumentException("File is not an XML file: " + filePath);
         }
 
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(file);
-        doc.getDocumentElement().normalize();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        try (CountingInputStream counted = new CountingInputStream(new FileInputStream(file));
+             InputStream in = new BufferedInputStream(counted)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                return read(reader, varsMap, new Progress(counted, file.length(), listener, token));
+            } finally {
+                reader.close();
+            }
+        }
+    }
 
-        List<Instruction> instructions = new ArrayList<>();
-        Map<Label, Instruction> labels = new HashMap<>();
+    private static Program read(XMLStreamReader reader, Map<String, Variable> varsMap, Progress progress)
+            throws XMLStreamException {
+        ProgramBody body = new ProgramBody(varsMap);
+
+        String programName = null;
+        String functionName = null;  // the S-Function being read, null in the program itself
+        List<PendingInstruction> functionBody = null;
+        Map<String, Program> functions = new LinkedHashMap<>();
+        PendingInstruction current = null;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (programName == null) {
+                    String name = reader.getAttributeValue(null, "name");
+                    programName = name != null ? name : "";
+                }
+                switch (reader.getLocalName()) {
+                    case "S-Function" -> {
+                        functionName = attribute(reader, "name");
+                        functionBody = new ArrayList<>();
+                    }
+                    case "S-Instruction" -> current = new PendingInstruction(
+                            attribute(reader, "name"), attribute(reader, "type"), locationOf(reader));
+                    case "S-Variable" -> {
+                        if (current != null && current.varName == null) {
+                            current.varName = reader.getElementText().trim();
+                        }
+                    }
+                    case "S-Label" -> {
+                        if (current != null && current.selfLabel == null) {
+                            current.selfLabel = parseLabel(reader.getElementText().trim());
+                        }
+                    }
+                    case "S-Instruction-Argument" -> {
+                        if (current != null) {
+                            current.args.put(attribute(reader, "name"), attribute(reader, "value"));
+                        }
+                    }
+                    default -> { }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if (element.equals("S-Instruction") && current != null) {
+                    progress.instructionRead();
+                    if (functionBody != null) {
+                        functionBody.add(current);
+                    } else {
+                        body.add(current);
+                    }
+                    current = null;
+                } else if (element.equals("S-Function") && functionBody != null) {
+                    checkUniqueLabels(functionBody);
+                    functions.put(functionName, lazyFunction(functionName, functionBody));
+                    functionName = null;
+                    functionBody = null;
+                }
+            }
+        }
 
-        String programName = doc.getDocumentElement().getAttribute("name");
+        progress.report();
+        Program program = body.toProgram(programName);
+        body.checkLabels("Program");
 
-        NodeList instrNodes = doc.getElementsByTagName("S-Instruction");
+        // registered only once the whole document is read, so a failed or cancelled
+        // load leaves the functions of the program in use as they were
+        functions.values().forEach(ProgramRepository::register);
+        ProgramRepository.register(program);
+        return program;
+    }
 
-        for (int i = 0; i < instrNodes.getLength(); i++) {
-            Element instrElem = (Element) instrNodes.item(i);
+    /** A function whose instructions are built, in a variable map of its own, when it is first used. */
+    private static Program lazyFunction(String name, List<PendingInstruction> instructions) {
+        return new LazyProgram(name, () -> {
+            ProgramBody body = new ProgramBody(new HashMap<>());
+            instructions.forEach(body::add);
+            body.checkLabels("Function " + name);
+            return body.toProgram(name);
+        });
+    }
 
-            String instrName = instrElem.getAttribute("name");
-            String type = instrElem.getAttribute("type");
+    /** Fails on the first label defined twice in a function, which is built only when it is first used. */
+    private static void checkUniqueLabels(List<PendingInstruction> instructions) {
+        Set<Label> defined = new HashSet<>();
+        for (PendingInstruction pending : instructions) {
+            Label selfLabel = pending.selfLabel;
+            if (selfLabel != null && selfLabel != FixedLabel.EMPTY && !defined.add(selfLabel)) {
+                throw duplicateLabel(selfLabel, pending.location);
+            }
+        }
+    }
 
-            // variable
-            Variable var = null;
-            NodeList varNodes = instrElem.getElementsByTagName("S-Variable");
-            if (varNodes.getLength() > 0) {
-                String varName = varNodes.item(0).getTextContent().trim();
-                if (!varsMap.containsKey(varName)) {
-                    varsMap.put(varName, new Var(varName));
-                }
-                var = varsMap.get(varName);
-            }
-
-            // label
-            Label selfLabel = FixedLabel.EMPTY;
-            NodeList labelNodes = instrElem.getElementsByTagName("S-Label");
-            if (labelNodes.getLength() > 0) {
-                String labelName = labelNodes.item(0).getTextContent().trim();
-                selfLabel = parseLabel(labelName);
-            }
-
-            // args
-            Map<String, String> args = new HashMap<>();
-            NodeList argParents = instrElem.getElementsByTagName("S-Instruction-Arguments");
-            if (argParents.getLength() > 0) {
-                Element argsElem = (Element) argParents.item(0);
-                NodeList argNodes = argsElem.getElementsByTagName("S-Instruction-Argument");
-                for (int j = 0; j < argNodes.getLength(); j++) {
-                    Element argElem = (Element) argNodes.item(j);
-                    String argName = argElem.getAttribute("name");
-                    String argValue = argElem.getAttribute("value");
-                    args.put(argName, argValue);
-                }
+    private static IllegalStateException duplicateLabel(Label label, String location) {
+        return new IllegalStateException(
+                "Label " + label.getLabel() + " is defined more than once, again " + location + ".");
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+
+    private static String locationOf(XMLStreamReader reader) {
+        Location location = reader.getLocation();
+        return "at line " + location.getLineNumber() + ", column " + location.getColumnNumber();
+    }
+
+    /** Reports the parse to a listener every REPORT_EVERY instructions and stops it once cancelled. */
+    private static class Progress {
+        private final CountingInputStream in;
+        private final long totalBytes;
+        private final LoadListener listener;
+        private final CancellationToken token;
+        private int instructions;
+
+        Progress(CountingInputStream in, long totalBytes, LoadListener listener, CancellationToken token) {
+            this.in = in;
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+            this.token = token;
+        }
+
+        void instructionRead() {
+            instructions++;
+            if (instructions % REPORT_EVERY == 0) {
+                this.report();
+            }
+        }
+
+        void report() {
+            if (token.isCancelled()) {
+                throw new CancellationException("Loading cancelled");
             }
+            listener.parsed(in.count, totalBytes, instructions);
+        }
+    }
 
-            // direct target label
-            Label targetLabel = FixedLabel.EMPTY;
-            if (args.containsKey("JNZLabel")) {
-                targetLabel = parseLabel(args.get("JNZLabel"));
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
             }
+            return b;
+        }
 
-            Instruction instr = createInstruction(instrName, var, selfLabel, targetLabel, args, varsMap);
-            if (instr != null) {
-                instructions.add(instr);
-                if (selfLabel != FixedLabel.EMPTY) {
-                    labels.put(selfLabel, instr);
-                }
-            } else {
-                throw new IllegalArgumentException(
-                        "Unknown instruction name: " + instrName + " (type=" + type + ")");
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
             }
+            return n;
         }
+    }
 
-        Program program = new SProgram(programName, labels, instructions);
+    /** The instructions of one program in the order they are read, with its labels. */
+    private static class ProgramBody {
+        private final Map<String, Variable> varsMap;
+        private final List<Instruction> instructions = new ArrayList<>();
+        private final Map<Label, Instruction> labels = new HashMap<>();
+        private final Map<Label, String> forwardRefs = new LinkedHashMap<>(); // target label -> where it is first used
 
-        // register in repository so other QUOTE can find it
-        execute.components.ProgramRepository.register(program);
+        ProgramBody(Map<String, Variable> varsMap) {
+            this.varsMap = varsMap;
+        }
 
-        if (!program.checkLabels()) {
-            throw new IllegalStateException("Program has invalid labels.");
+        void add(PendingInstruction pending) {
+            Instruction instr = pending.build(varsMap);
+            instructions.add(instr);
+
+            Label selfLabel = instr.getSelfLabel();
+            if (selfLabel != FixedLabel.EMPTY) {
+                if (labels.putIfAbsent(selfLabel, instr) != null) {
+                    throw duplicateLabel(selfLabel, pending.location);
+                }
+                forwardRefs.remove(selfLabel);
+            }
+            Label target = instr.getTargetLabel();
+            if (target != FixedLabel.EMPTY && target != FixedLabel.EXIT && !labels.containsKey(target)) {
+                forwardRefs.putIfAbsent(target, pending.location);
+            }
         }
-        return program;
 
+        Program toProgram(String name) {
+            return new SProgram(name, labels, instructions);
+        }
+
+        /** Fails on the first jump target that no instruction defines. */
+        void checkLabels(String owner) {
+            if (!forwardRefs.isEmpty()) {
+                Map.Entry<Label, String> missing = forwardRefs.entrySet().iterator().next();
+                throw new IllegalStateException(owner + " has invalid labels: " + missing.getKey().getLabel()
+                        + " is used " + missing.getValue() + " but never defined.");
+            }
+        }
+    }
+
+    /** The parts of an S-Instruction element read so far. */
+    private static class PendingInstruction {
+        private final String name;
+        private final String type;
+        private final String location;
+        private final Map<String, String> args = new HashMap<>();
+        private String varName;
+        private Label selfLabel;
+
+        PendingInstruction(String name, String type, String location) {
+            this.name = name;
+            this.type = type;
+            this.location = location;
+        }
 
+        Instruction build(Map<String, Variable> varsMap) {
+            Variable var = varName == null ? null : varsMap.computeIfAbsent(varName, Var::new);
+            Label self = selfLabel != null ? selfLabel : FixedLabel.EMPTY;
+            Label target = args.containsKey("JNZLabel") ? parseLabel(args.get("JNZLabel")) : FixedLabel.EMPTY;
 
+            Instruction instr;
+            try {
+                instr = createInstruction(name, var, self, target, args, varsMap);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "Invalid instruction " + name + " " + location + ": " + e.getMessage(), e);
+            }
+            if (instr == null) {
+                throw new IllegalArgumentException(
+                        "Unknown instruction name: " + name + " (type=" + type + ") " + location);
+            }
+            return instr;
+        }
     }
 
     private static Instruction createInstruction(String name,
@@ -181,7 +377,7 @@ public class XmlLoader {
         };
     }
 
-    private static Label parseLabel(String labelValue) {
+    static Label parseLabel(String labelValue) {
         if (labelValue == null || labelValue.isEmpty()) return FixedLabel.EMPTY;
 
         String v = labelValue.trim();
@@ -0,0 +1,20 @@
+package execute.dto;
+
+/**
+ * Outputs and cycles of a batch run, stored by column: entry i belongs to the i-th input vector.
+ */
+public class BatchResult {
+    private final long[] outputs;
+    private final long[] cycles;
+
+    public BatchResult(long[] outputs, long[] cycles) {
+        this.outputs = outputs;
+        this.cycles = cycles;
+    }
+
+    public int size() { return outputs.length; }
+    public long[] getOutputs() { return outputs; }
+    public long[] getCycles() { return cycles; }
+    public long getOutput(int i) { return outputs[i]; }
+    public long getCycles(int i) { return cycles[i]; }
+}
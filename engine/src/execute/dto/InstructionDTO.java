@@ -2,11 +2,17 @@ package execute.dto;
 
 import logic.instructions.Instruction;
 import logic.instructions.InstructionData;
+import logic.program.CompactProgram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class InstructionDTO {
     private final LabelDTO selfLabel;
     private final InstructionData data;
+    private final int cycles;
     private final int num;
     private final int k;
     private final List<VariableDTO> variables;
@@ -17,6 +23,7 @@ public class InstructionDTO {
     public InstructionDTO(Instruction instr) {
         this.selfLabel = instr.getSelfLabelDTO();
         this.data = instr.getData();
+        this.cycles = instr.getCycles();
         this.num = instr.getNum();
         this.k = instr.getConst();
         this.variables = instr.getVarsDTO();
@@ -27,8 +34,70 @@ public class InstructionDTO {
         this.name = instr.print();
     }
 
+    /** DTO of the given row, where parent is the DTO of the row it was expanded from. */
+    public InstructionDTO(CompactProgram program, int row, InstructionDTO parent) {
+        this.selfLabel = new LabelDTO(program.getSelfLabel(row));
+        this.data = program.getData(row);
+        this.cycles = program.getCycles(row);
+        this.num = program.getLine(row);
+        this.k = program.getConst(row);
+        this.variables = program.getVariables(row).stream().map(VariableDTO::new).toList();
+        this.argLabel = new LabelDTO(program.getArgLabel(row));
+        this.parent = parent;
+        this.name = program.print(row);
+    }
+
+    private InstructionDTO(InstructionDTO repeated, LabelDTO selfLabel) {
+        this.selfLabel = selfLabel;
+        this.data = InstructionData.INCREASE;
+        this.cycles = InstructionData.INCREASE.getCycles();
+        this.num = repeated.num;
+        this.k = 0;
+        this.variables = repeated.variables;
+        this.argLabel = repeated.argLabel;
+        this.parent = repeated.parent;
+        String v = variables.get(0).getName();
+        this.name = v + " <- " + v + " + 1";
+    }
+
+    /**
+     * The INCREASE lines a REPEATED_INCREASE stands for, all with its line number, parent and
+     * with its label on the first; any other instruction is returned as it is.
+     */
+    public List<InstructionDTO> expandRepeated() {
+        if (data != InstructionData.REPEATED_INCREASE) {
+            return List.of(this);
+        }
+        List<InstructionDTO> result = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            result.add(new InstructionDTO(this, i == 0 ? selfLabel : new LabelDTO("")));
+        }
+        return result;
+    }
+
+    /** DTOs of the program's instructions; instructions expanded from the same parent share its DTO. */
+    public static List<InstructionDTO> of(CompactProgram program) {
+        Map<Integer, InstructionDTO> ancestors = new HashMap<>();
+        List<InstructionDTO> result = new ArrayList<>(program.size());
+        for (int row = 0; row < program.size(); row++) {
+            result.add(new InstructionDTO(program, row, ancestor(program, program.getParent(row), ancestors)));
+        }
+        return result;
+    }
+
+    private static InstructionDTO ancestor(CompactProgram program, int row, Map<Integer, InstructionDTO> ancestors) {
+        if (row < 0) return null;
+        InstructionDTO dto = ancestors.get(row);
+        if (dto == null) {
+            dto = new InstructionDTO(program, row, ancestor(program, program.getParent(row), ancestors));
+            ancestors.put(row, dto);
+        }
+        return dto;
+    }
+
     public LabelDTO getSelfLabel() { return selfLabel; }
     public InstructionData getData() { return data; }
+    public int getCycles() { return cycles; }
     public int getNum() { return num; }
     public int getConst() { return k; }
     public List<VariableDTO> getVariables() { return variables; }
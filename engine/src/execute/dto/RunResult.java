@@ -0,0 +1,35 @@
+package execute.dto;
+
+import logic.program.StopReason;
+
+import java.util.List;
+
+/**
+ * Outcome of a run. A run stopped by a limit still carries the variables,
+ * cycles and steps it had reached.
+ */
+public class RunResult {
+    private final long result;
+    private final long cycles;
+    private final long steps;
+    private final StopReason stopReason;
+    private final List<VariableDTO> variables;
+
+    public RunResult(long result, long cycles, long steps, StopReason stopReason, List<VariableDTO> variables) {
+        this.result = result;
+        this.cycles = cycles;
+        this.steps = steps;
+        this.stopReason = stopReason;
+        this.variables = variables;
+    }
+
+    public long getResult() { return result; }
+    public long getCycles() { return cycles; }
+    public long getSteps() { return steps; }
+    public StopReason getStopReason() { return stopReason; }
+    public List<VariableDTO> getVariables() { return variables; }
+
+    public boolean isCompleted() {
+        return stopReason == StopReason.COMPLETED;
+    }
+}
@@ -19,7 +19,8 @@ public interface Instruction {
 
     int getDegree();
 
-    void setNum(int num);
+    /** Returns this instruction numbered num, copying it if its number differs. */
+    Instruction withNum(int num);
 
     Label getTargetLabel();
 
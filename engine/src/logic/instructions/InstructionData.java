@@ -5,6 +5,7 @@ public enum InstructionData {
     DECREASE("DECREASE", 1, 0, InstructionType.BASIC),
     JUMP_NOT_ZERO("JNZ", 3, 0, InstructionType.BASIC),
     NO_OP("NO_OP", 0, 0, InstructionType.BASIC),
+    REPEATED_INCREASE("REPEATED_INCREASE", 1, 0, InstructionType.BASIC), // cycles per increase
 
     ZERO_VARIABLE("ZERO_VARIABLE", 1, 1, InstructionType.SYNTHETIC),
     GOTO_LABEL("GOTO_LABEL", 1, 1, InstructionType.SYNTHETIC),
@@ -8,7 +8,7 @@ import logic.labels.Label;
 public abstract class AbstractInstruction implements Instruction {
     private final Label selfLabel;
     private final InstructionData data;
-    private int num;
+    private final int num;
     private final Instruction parent;
 
     public AbstractInstruction(InstructionData data) {
@@ -54,7 +54,7 @@ public abstract class AbstractInstruction implements Instruction {
                 data.getInstructionType(),
                 selfLabel.getLabel(),
                 this.print(),
-                data.getCycles());
+                this.getCycles());
         if (parent != null) {
             result += " >>> " + parent.getRepresentation();
         }
@@ -70,9 +70,6 @@ public abstract class AbstractInstruction implements Instruction {
     @Override
     public int getDegree() { return data.getDegree(); }
 
-    @Override
-    public void setNum(int num) { this.num = num; }
-
     @Override
     public int getNum() { return num; }
 }
@@ -26,6 +26,11 @@ public class Decrease extends AbstractInstruction {
         this(selfLabel, v, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new Decrease(getSelfLabel(), v, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
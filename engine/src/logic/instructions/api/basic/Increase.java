@@ -26,6 +26,11 @@ public class Increase extends AbstractInstruction {
         this(selfLabel, v, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new Increase(getSelfLabel(), v, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
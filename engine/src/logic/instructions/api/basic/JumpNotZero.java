@@ -29,6 +29,11 @@ public class JumpNotZero extends AbstractInstruction {
         this(selfLabel, v, target, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new JumpNotZero(getSelfLabel(), v, target, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
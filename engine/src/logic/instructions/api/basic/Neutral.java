@@ -27,6 +27,11 @@ public class Neutral extends AbstractInstruction {
         this(selfLabel, v, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new Neutral(getSelfLabel(), v, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
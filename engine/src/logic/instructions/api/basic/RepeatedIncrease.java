@@ -0,0 +1,64 @@
+package logic.instructions.api.basic;
+import execute.dto.VariableDTO;
+import logic.instructions.Instruction;
+import logic.instructions.InstructionData;
+import logic.instructions.api.AbstractInstruction;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.variables.Variable;
+
+import java.util.List;
+
+/**
+ * k INCREASE instructions on the same variable kept as one line:
+ * v is increased by k and the line costs k cycles.
+ */
+public class RepeatedIncrease extends AbstractInstruction {
+
+    private final Variable v;
+    private final int k;
+
+    public RepeatedIncrease(Label selfLabel, Variable v, int k, int num, Instruction parent) {
+        super(InstructionData.REPEATED_INCREASE, selfLabel, num, parent);
+        this.v = v;
+        this.k = k;
+    }
+
+    public RepeatedIncrease(Label selfLabel, Variable v, int k, int num) {
+        this(selfLabel, v, k, num, null);
+    }
+
+    public RepeatedIncrease(Label selfLabel, Variable v, int k) {
+        this(selfLabel, v, k, 1);
+    }
+
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new RepeatedIncrease(getSelfLabel(), v, k, num, getParent());
+    }
+
+    @Override
+    public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
+
+    @Override
+    public List<Variable> getVars() { return List.of(v); }
+
+    @Override
+    public int getConst() { return k; }
+
+    @Override
+    public int getCycles() { return k * getData().getCycles(); }
+
+    @Override
+    public Label execute() {
+        v.setValue(v.getValue() + k);
+        return FixedLabel.EMPTY;
+    }
+
+    @Override
+    public String print() {
+        return v.getName() + " <- "  + v.getName() + " + " + k;
+    }
+
+    public Variable getVariable() { return v; }
+}
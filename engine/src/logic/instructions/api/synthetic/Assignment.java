@@ -29,6 +29,11 @@ public class Assignment extends AbstractInstruction {
         this(selfLabel, x, y, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new Assignment(getSelfLabel(), x, y, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(x), new VariableDTO(y)); }
 
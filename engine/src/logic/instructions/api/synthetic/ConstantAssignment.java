@@ -30,6 +30,11 @@ public class ConstantAssignment extends AbstractInstruction {
         this(selfLabel, v, k, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new ConstantAssignment(getSelfLabel(), v, k, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
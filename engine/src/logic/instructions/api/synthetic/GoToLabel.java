@@ -28,6 +28,11 @@ public class GoToLabel extends AbstractInstruction {
         this( selfLabel, target, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new GoToLabel(getSelfLabel(), target, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(); }
 
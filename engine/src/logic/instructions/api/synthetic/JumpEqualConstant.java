@@ -32,6 +32,11 @@ public class JumpEqualConstant extends AbstractInstruction {
         this( selfLabel, v, k, target, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new JumpEqualConstant(getSelfLabel(), v, k, target, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
@@ -55,6 +55,11 @@ public class JumpEqualFunction extends AbstractInstruction {
         this(selfLabel, v, z1, functionName, functionArguments, jumpLabel, 1, null);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new JumpEqualFunction(getSelfLabel(), v, z1, functionName, functionArguments, jumpLabel, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() {
         return List.of(new VariableDTO(v), new VariableDTO(z1));
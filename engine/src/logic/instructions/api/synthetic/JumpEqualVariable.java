@@ -32,6 +32,11 @@ public class JumpEqualVariable extends AbstractInstruction {
         this( selfLabel, x, y, target, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new JumpEqualVariable(getSelfLabel(), x, y, target, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(x),  new VariableDTO(y)); }
 
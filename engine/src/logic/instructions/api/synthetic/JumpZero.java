@@ -30,6 +30,11 @@ public class JumpZero extends AbstractInstruction {
         this( selfLabel, v, target, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new JumpZero(getSelfLabel(), v, target, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
@@ -53,6 +53,11 @@ public class Quote extends AbstractInstruction {
         this(selfLabel, target, functionName, functionArguments, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new Quote(getSelfLabel(), target, functionName, functionArguments, num, getParent());
+    }
+
     // ------------------ API ------------------
 
     public String getFunctionName() { return functionName; }
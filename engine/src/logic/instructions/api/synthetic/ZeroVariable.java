@@ -27,6 +27,11 @@ public class ZeroVariable extends AbstractInstruction {
         this( selfLabel, v, 1);
     }
 
+    @Override
+    public Instruction withNum(int num) {
+        return num == getNum() ? this : new ZeroVariable(getSelfLabel(), v, num, getParent());
+    }
+
     @Override
     public List<VariableDTO> getVarsDTO() { return List.of(new VariableDTO(v)); }
 
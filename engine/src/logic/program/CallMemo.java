@@ -0,0 +1,50 @@
+package logic.program;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of earlier calls to one function, keyed by argument values. A function
+ * always starts from cleared registers, so its output and cost depend on its
+ * arguments alone. Holds at most CAPACITY entries and evicts the least recently used.
+ */
+class CallMemo {
+    private static final int CAPACITY = 4096;
+
+    private final Map<Arguments, long[]> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Arguments, long[]> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /** Returns {result, cycles, steps} of an earlier call with these arguments, or null. */
+    synchronized long[] get(long[] arguments) {
+        return entries.get(new Arguments(arguments));
+    }
+
+    synchronized void put(long[] arguments, long result, long cycles, long steps) {
+        entries.put(new Arguments(arguments), new long[] { result, cycles, steps });
+    }
+
+    private static class Arguments {
+        private final long[] values;
+        private final int hash;
+
+        Arguments(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Arguments other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
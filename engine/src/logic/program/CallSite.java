@@ -0,0 +1,164 @@
+package logic.program;
+
+import execute.components.ProgramRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function call made by QUOTE or JUMP_EQUAL_FUNCTION. Argument i is either a caller
+ * variable or a nested call, and is passed to the callee as x(i+1). The callee runs in
+ * its own register window, taken from the caller's ExecutionContext.
+ */
+class CallSite {
+    private final String function;
+    private final String[] variables;   // caller variable of each argument, null for a nested call
+    private final CallSite[] nested;
+    private int[] slots;                // caller slot of each variable argument
+
+    private volatile LinkedProgram callee;
+    private int[] inputSlots;           // callee slot of x(i+1), or -1 when the callee never reads it
+
+    private CallSite(String function, String[] variables, CallSite[] nested) {
+        this.function = function;
+        this.variables = variables;
+        this.nested = nested;
+    }
+
+    /** Parses arguments such as {@code x1,(Const7),(Plus,x2,z1)}. */
+    static CallSite parse(String function, String arguments) {
+        List<String> parts = splitArguments(arguments);
+        String[] variables = new String[parts.size()];
+        CallSite[] nested = new CallSite[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            String part = parts.get(i);
+            if (part.startsWith("(") && part.endsWith(")")) {
+                String inner = part.substring(1, part.length() - 1);
+                int comma = inner.indexOf(',');
+                nested[i] = comma < 0
+                        ? parse(inner.trim(), "")
+                        : parse(inner.substring(0, comma).trim(), inner.substring(comma + 1));
+            } else {
+                variables[i] = part;
+            }
+        }
+        return new CallSite(function, variables, nested);
+    }
+
+    private static List<String> splitArguments(String arguments) {
+        List<String> parts = new ArrayList<>();
+        if (arguments == null || arguments.isBlank()) {
+            return parts;
+        }
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == ',' && depth == 0) {
+                parts.add(arguments.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(arguments.substring(start).trim());
+        parts.removeIf(String::isEmpty);
+        return parts;
+    }
+
+    /** Caller variables read by this call and its nested calls. */
+    void collectVariables(List<String> names) {
+        for (int i = 0; i < variables.length; i++) {
+            if (nested[i] != null) {
+                nested[i].collectVariables(names);
+            } else {
+                names.add(variables[i]);
+            }
+        }
+    }
+
+    void bind(LinkedProgram caller) {
+        slots = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            if (nested[i] != null) {
+                nested[i].bind(caller);
+            } else {
+                slots[i] = caller.slotOf(variables[i]);
+            }
+        }
+    }
+
+    String getFunction() { return function; }
+
+    /**
+     * Runs the callee in frame with the arguments read from the caller's registers.
+     * The callee's output is left in the frame's output slot. A callee with an intrinsic
+     * is answered by its formulas, and a call whose arguments were seen before is replayed
+     * from the callee's memo, cycles and steps included. options is the budget the caller
+     * has left; each nested call gets what is left of it after the calls before it.
+     */
+    StopReason invoke(long[] callerRegisters, ExecutionContext frame, RunOptions options) {
+        LinkedProgram program = resolve();
+        long[] arguments = new long[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            if (nested[i] != null) {
+                ExecutionContext inner = frame.enterCall(nested[i].resolve().getSlotCount());
+                StopReason reason = nested[i].invoke(callerRegisters, inner,
+                        options.remaining(frame.getCycles(), frame.getSteps()));
+                frame.addCounters(inner.getCycles(), inner.getSteps());
+                if (reason != StopReason.COMPLETED) {
+                    return reason;
+                }
+                arguments[i] = inner.get(LinkedProgram.OUTPUT_SLOT);
+            } else {
+                arguments[i] = slots[i] >= 0 ? callerRegisters[slots[i]] : 0;
+            }
+        }
+
+        if (program.getIntrinsic() != null) {
+            program.getIntrinsic().apply(arguments, frame);
+            return StopReason.COMPLETED;
+        }
+
+        CallMemo memo = program.getCallMemo();
+        long[] known = memo.get(arguments);
+        if (known != null) {
+            frame.set(LinkedProgram.OUTPUT_SLOT, known[0]);
+            frame.addCounters(known[1], known[2]);
+            return StopReason.COMPLETED;
+        }
+
+        for (int i = 0; i < arguments.length && i < inputSlots.length; i++) {
+            if (inputSlots[i] >= 0) {
+                frame.set(inputSlots[i], arguments[i]);
+            }
+        }
+        long cycles = frame.getCycles();
+        long steps = frame.getSteps();
+        StopReason reason = program.run(frame, options.remaining(cycles, steps));
+        if (reason == StopReason.COMPLETED) {
+            memo.put(arguments, frame.get(LinkedProgram.OUTPUT_SLOT),
+                    frame.getCycles() - cycles, frame.getSteps() - steps);
+        }
+        return reason;
+    }
+
+    LinkedProgram resolve() {
+        LinkedProgram result = callee;
+        if (result == null) {
+            Program program = ProgramRepository.get(function);
+            if (program == null) {
+                throw new IllegalStateException("Function/program not found for QUOTE: " + function);
+            }
+            result = program.link();
+            result.matchIntrinsic(program);
+            int[] inputs = new int[variables.length];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = result.slotOf("x" + (i + 1));
+            }
+            inputSlots = inputs;
+            callee = result;
+        }
+        return result;
+    }
+}
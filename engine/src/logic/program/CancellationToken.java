@@ -0,0 +1,16 @@
+package logic.program;
+
+/**
+ * Lets another thread stop a run. Runs also stop when the thread executing them is interrupted.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
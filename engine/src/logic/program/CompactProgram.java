@@ -0,0 +1,183 @@
+package logic.program;
+
+import logic.instructions.Instruction;
+import logic.instructions.InstructionData;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.labels.FixedLabel;
+import logic.variables.Variable;
+
+import java.util.*;
+
+/**
+ * Listing form of a program: one row per instruction, held in parallel arrays of
+ * data, line, labels, operands, jump target and parent row. Variables, labels and
+ * function calls are stored once in tables and referenced by index. The instructions
+ * an expansion came from are stored as extra rows after the program's own, so every
+ * parent is a row and a whole expansion history prints without touching an Instruction.
+ */
+public class CompactProgram {
+    private static final InstructionData[] DATA = InstructionData.values();
+
+    private final int size;
+    private final int[] data;
+    private final int[] lines;
+    private final int[] selfLabels;     // index into labelNames, 0 for no label
+    private final int[] targetLabels;
+    private final int[] targets;        // pc of the jump target, LinkedProgram.EXIT_PC or UNKNOWN_PC
+    private final int[] firstVars;      // index into variables, -1 when unused
+    private final int[] secondVars;
+    private final int[] constants;
+    private final int[] calls;          // index into functionNames, -1 for other instructions
+    private final int[] parents;        // row of the parent instruction, -1 for none
+
+    private final Variable[] variables;
+    private final String[] labelNames;
+    private final String[] functionNames;
+    private final String[] functionArguments;
+
+    public CompactProgram(Program program) {
+        List<Instruction> rows = new ArrayList<>(program.getInstructionRope());
+        this.size = rows.size();
+
+        // ancestors follow the program's rows, each stored once
+        Map<Instruction, Integer> rowOf = new IdentityHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Instruction parent = rows.get(i).getParent();
+            if (parent != null && !rowOf.containsKey(parent)) {
+                rowOf.put(parent, rows.size());
+                rows.add(parent);
+            }
+        }
+
+        int count = rows.size();
+        this.data = new int[count];
+        this.lines = new int[count];
+        this.selfLabels = new int[count];
+        this.targetLabels = new int[count];
+        this.targets = new int[count];
+        this.firstVars = new int[count];
+        this.secondVars = new int[count];
+        this.constants = new int[count];
+        this.calls = new int[count];
+        this.parents = new int[count];
+
+        Map<Variable, Integer> variableIds = new IdentityHashMap<>();
+        Map<String, Integer> labelIds = new HashMap<>();
+        labelIds.put(FixedLabel.EMPTY.getLabel(), 0);
+        List<String[]> functions = new ArrayList<>();
+
+        for (int row = 0; row < count; row++) {
+            Instruction instr = rows.get(row);
+            data[row] = instr.getData().ordinal();
+            lines[row] = row < size ? row + 1 : instr.getNum(); // stored numbers may belong to another degree
+            selfLabels[row] = labelIds.computeIfAbsent(instr.getSelfLabel().getLabel(), k -> labelIds.size());
+            targetLabels[row] = labelIds.computeIfAbsent(instr.getTargetLabel().getLabel(), k -> labelIds.size());
+            targets[row] = row < size ? target(program, instr, row) : LinkedProgram.UNKNOWN_PC;
+
+            List<Variable> vars = instr.getVars();
+            firstVars[row] = vars.isEmpty() ? -1 : variableIds.computeIfAbsent(vars.get(0), k -> variableIds.size());
+            secondVars[row] = vars.size() < 2 ? -1 : variableIds.computeIfAbsent(vars.get(1), k -> variableIds.size());
+            constants[row] = instr.getConst();
+
+            calls[row] = -1;
+            if (instr instanceof Quote quote) {
+                calls[row] = functions.size();
+                functions.add(new String[] { quote.getFunctionName(), quote.getFunctionArguments() });
+            } else if (instr instanceof JumpEqualFunction jef) {
+                calls[row] = functions.size();
+                functions.add(new String[] { jef.getFunctionName(), jef.getFunctionArguments() });
+            }
+
+            Instruction parent = instr.getParent();
+            parents[row] = parent == null ? -1 : rowOf.get(parent);
+        }
+
+        this.variables = new Variable[variableIds.size()];
+        variableIds.forEach((v, id) -> variables[id] = v);
+        this.labelNames = new String[labelIds.size()];
+        labelIds.forEach((name, id) -> labelNames[id] = name);
+        this.functionNames = functions.stream().map(f -> f[0]).toArray(String[]::new);
+        this.functionArguments = functions.stream().map(f -> f[1]).toArray(String[]::new);
+    }
+
+    private static int target(Program program, Instruction instr, int pc) {
+        if (instr.getTargetLabel() == FixedLabel.EXIT) return LinkedProgram.EXIT_PC;
+        if (instr.getTargetLabel() == FixedLabel.EMPTY) return pc + 1;
+        int target = program.indexOf(instr.getTargetLabel());
+        return target < 0 ? LinkedProgram.UNKNOWN_PC : target;
+    }
+
+    /** Number of instructions in the program; rows from size() on are their ancestors. */
+    public int size() { return size; }
+
+    public InstructionData getData(int row) { return DATA[data[row]]; }
+
+    public int getLine(int row) { return lines[row]; }
+
+    public String getSelfLabel(int row) { return labelNames[selfLabels[row]]; }
+
+    public String getTargetLabel(int row) { return labelNames[targetLabels[row]]; }
+
+    public int getTarget(int row) { return targets[row]; }
+
+    public int getConst(int row) { return constants[row]; }
+
+    public int getCycles(int row) {
+        int cycles = getData(row).getCycles();
+        return getData(row) == InstructionData.REPEATED_INCREASE ? constants[row] * cycles : cycles;
+    }
+
+    /** Row of the instruction this one was expanded from, or -1. */
+    public int getParent(int row) { return parents[row]; }
+
+    public List<Variable> getVariables(int row) {
+        if (firstVars[row] < 0) return List.of();
+        if (secondVars[row] < 0) return List.of(variables[firstVars[row]]);
+        return List.of(variables[firstVars[row]], variables[secondVars[row]]);
+    }
+
+    /** The label a jump names, or "" for instructions that do not name one in their arguments. */
+    public String getArgLabel(int row) {
+        return switch (getData(row)) {
+            case JUMP_NOT_ZERO, GOTO_LABEL, JUMP_ZERO, JUMP_EQUAL_CONSTANT, JUMP_EQUAL_VARIABLE -> getTargetLabel(row);
+            default -> "";
+        };
+    }
+
+    /** The instruction text, as Instruction.print() gives it. */
+    public String print(int row) {
+        String v = firstVars[row] < 0 ? "?" : variables[firstVars[row]].getName();
+        String w = secondVars[row] < 0 ? v : variables[secondVars[row]].getName();
+        String target = getTargetLabel(row);
+        return switch (getData(row)) {
+            case INCREASE -> v + " <- " + v + " + 1";
+            case DECREASE -> v + " <- " + v + " - 1";
+            case JUMP_NOT_ZERO -> "IF " + v + " != 0 GOTO " + target;
+            case NO_OP -> v + " <- " + v;
+            case REPEATED_INCREASE -> v + " <- " + v + " + " + constants[row];
+            case ZERO_VARIABLE -> v + " <- 0";
+            case GOTO_LABEL -> "GOTO " + target;
+            case ASSIGNMENT -> v + " <- " + w;
+            case CONSTANT_ASSIGNMENT -> v + " <- " + constants[row];
+            case JUMP_ZERO -> "IF " + v + " = 0 GOTO " + target;
+            case JUMP_EQUAL_CONSTANT -> "IF " + v + " = " + constants[row] + " GOTO " + target;
+            case JUMP_EQUAL_VARIABLE -> "IF " + v + " = " + w + " GOTO " + target;
+            case QUOTE -> String.format("%s <- (%s,%s)", v, functionNames[calls[row]], functionArguments[calls[row]]);
+            case JUMP_EQUAL_FUNCTION -> "IF " + v + " = (" + functionNames[calls[row]] + ","
+                    + functionArguments[calls[row]] + ") GOTO " + target;
+        };
+    }
+
+    /** The full line with its expansion history, as Instruction.getRepresentation() gives it. */
+    public String getRepresentation(int row) {
+        StringBuilder sb = new StringBuilder();
+        for (int r = row; r >= 0; r = parents[r]) {
+            if (r != row) sb.append(" >>> ");
+            InstructionData d = getData(r);
+            sb.append(String.format("#%d (%s) [ %-3s ] %s (%d)",
+                    lines[r], d.getInstructionType(), getSelfLabel(r), print(r), getCycles(r)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package logic.program;
+
+import java.util.Arrays;
+
+/**
+ * Register file of a single run. Every variable of a linked program owns one slot,
+ * so any number of contexts can run the same LinkedProgram at once. The context also
+ * counts the cycles and the instructions executed by the runs made with it.
+ */
+public class ExecutionContext {
+    public static final int CYCLES = 0;
+    public static final int STEPS = 1;
+    public static final int MAX_CALL_DEPTH = 1000;
+
+    private final long[] registers;
+    private final long[] counters = new long[2];
+    private final int depth;
+    private ExecutionContext callee;
+
+    public ExecutionContext(int size) {
+        this(size, 0);
+    }
+
+    private ExecutionContext(int size, int depth) {
+        this.registers = new long[size];
+        this.depth = depth;
+    }
+
+    public long[] getRegisters() { return registers; }
+
+    public int size() { return registers.length; }
+
+    public long get(int slot) { return registers[slot]; }
+
+    public void set(int slot, long value) {
+        registers[slot] = Math.max(value, 0);
+    }
+
+    /** The CYCLES and STEPS counters, updated in place by compiled programs. */
+    public long[] getCounters() { return counters; }
+
+    public long getCycles() { return counters[CYCLES]; }
+
+    public long getSteps() { return counters[STEPS]; }
+
+    public void addCounters(long cycles, long steps) {
+        counters[CYCLES] += cycles;
+        counters[STEPS] += steps;
+    }
+
+    /**
+     * Returns the cleared register window of a call made from this context. Each depth
+     * keeps one window and reuses it for every call, so a run allocates at most one
+     * context per call depth.
+     */
+    public ExecutionContext enterCall(int size) {
+        if (depth + 1 >= MAX_CALL_DEPTH) {
+            throw new IllegalStateException("Function calls nested deeper than " + MAX_CALL_DEPTH);
+        }
+        if (callee == null || callee.size() < size) {
+            callee = new ExecutionContext(size, depth + 1);
+        } else {
+            callee.reset();
+        }
+        return callee;
+    }
+
+    public void reset() {
+        Arrays.fill(registers, 0);
+        Arrays.fill(counters, 0);
+    }
+}
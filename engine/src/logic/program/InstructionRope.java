@@ -0,0 +1,132 @@
+package logic.program;
+
+import logic.instructions.Instruction;
+
+import java.util.*;
+
+/**
+ * Persistent list of instructions made of segments, each a range of an array that is
+ * never written after it is built. An expansion keeps the instructions it does not
+ * change by pointing at the arrays of the degree below, so unchanged runs are stored
+ * once for all degrees and only the newly expanded instructions take new space.
+ * Instructions are kept as they were created, so their numbers may belong to the
+ * degree that first held them; SProgram numbers them when they are read.
+ */
+public class InstructionRope extends AbstractList<Instruction> implements RandomAccess {
+    private static final InstructionRope EMPTY = new InstructionRope(new Instruction[0][], new int[0], new int[] { 0 });
+
+    private final Instruction[][] arrays;
+    private final int[] froms;
+    private final int[] starts;     // index of the first instruction of each segment, then the size
+
+    private InstructionRope(Instruction[][] arrays, int[] froms, int[] starts) {
+        this.arrays = arrays;
+        this.froms = froms;
+        this.starts = starts;
+    }
+
+    public static InstructionRope empty() {
+        return EMPTY;
+    }
+
+    public static InstructionRope of(List<Instruction> instructions) {
+        return new Builder().addAll(instructions).build();
+    }
+
+    @Override
+    public Instruction get(int index) {
+        Objects.checkIndex(index, size());
+        int segment = segmentOf(index);
+        return arrays[segment][froms[segment] + index - starts[segment]];
+    }
+
+    @Override
+    public int size() {
+        return starts[arrays.length];
+    }
+
+    /** Number of array ranges this list is made of. */
+    public int segmentCount() {
+        return arrays.length;
+    }
+
+    private int segmentOf(int index) {
+        int segment = Arrays.binarySearch(starts, 0, arrays.length, index);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    /** Builds a rope from new instructions and ranges of existing ropes. */
+    public static class Builder {
+        private final List<Instruction[]> arrays = new ArrayList<>();
+        private final List<Integer> froms = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<Instruction> pending = new ArrayList<>();
+        private int size;
+
+        public Builder add(Instruction instruction) {
+            pending.add(instruction);
+            size++;
+            return this;
+        }
+
+        public Builder addAll(Collection<? extends Instruction> instructions) {
+            pending.addAll(instructions);
+            size += instructions.size();
+            return this;
+        }
+
+        /** Appends source[index], sharing the array source holds it in. */
+        public Builder keep(InstructionRope source, int index) {
+            return keep(source, index, index + 1);
+        }
+
+        /** Appends source[from, to), sharing the arrays source holds them in. */
+        public Builder keep(InstructionRope source, int from, int to) {
+            flush();
+            int index = from;
+            while (index < to) {
+                int segment = source.segmentOf(index);
+                int position = source.froms[segment] + index - source.starts[segment];
+                int count = Math.min(to, source.starts[segment + 1]) - index;
+                append(source.arrays[segment], position, count);
+                index += count;
+                size += count;
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public InstructionRope build() {
+            flush();
+            Instruction[][] segments = arrays.toArray(new Instruction[0][]);
+            int[] offsets = new int[segments.length];
+            int[] starts = new int[segments.length + 1];
+            for (int i = 0; i < segments.length; i++) {
+                offsets[i] = froms.get(i);
+                starts[i + 1] = starts[i] + lengths.get(i);
+            }
+            return new InstructionRope(segments, offsets, starts);
+        }
+
+        private void append(Instruction[] array, int from, int count) {
+            int last = arrays.size() - 1;
+            if (last >= 0 && arrays.get(last) == array && froms.get(last) + lengths.get(last) == from) {
+                lengths.set(last, lengths.get(last) + count); // continues the previous range
+            } else {
+                arrays.add(array);
+                froms.add(from);
+                lengths.add(count);
+            }
+        }
+
+        private void flush() {
+            if (!pending.isEmpty()) {
+                append(pending.toArray(new Instruction[0]), 0, pending.size());
+                pending.clear();
+            }
+        }
+    }
+}
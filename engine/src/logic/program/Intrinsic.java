@@ -0,0 +1,71 @@
+package logic.program;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * A function body with a known closed form. When a quoted function has the same shape
+ * as an intrinsic, its calls are answered by the result, cycles and steps formulas
+ * instead of running the body. Formulas read argument i as args[i], missing arguments are 0.
+ * The constants the shape leaves open, written #, follow the arguments in the order they appear.
+ */
+public class Intrinsic {
+    private final String name;
+    private final List<String> shape;
+    private final int arity;
+    private final ToLongFunction<long[]> result;
+    private final ToLongFunction<long[]> cycles;
+    private final ToLongFunction<long[]> steps;
+    private final long[] constants; // the open constants of the body matched, empty before a match
+
+    /**
+     * @param shape the body as given by {@link Intrinsics#shapeOf}
+     * @param arity number of x inputs the body reads
+     */
+    public Intrinsic(String name, List<String> shape, int arity, ToLongFunction<long[]> result,
+                     ToLongFunction<long[]> cycles, ToLongFunction<long[]> steps) {
+        this.name = name;
+        this.shape = List.copyOf(shape);
+        this.arity = arity;
+        this.result = result;
+        this.cycles = cycles;
+        this.steps = steps;
+        this.constants = new long[0];
+    }
+
+    private Intrinsic(Intrinsic open, long[] constants) {
+        this.name = open.name;
+        this.shape = open.shape;
+        this.arity = open.arity;
+        this.result = open.result;
+        this.cycles = open.cycles;
+        this.steps = open.steps;
+        this.constants = constants;
+    }
+
+    /** This intrinsic with its open constants set to those of a matching body. */
+    Intrinsic withConstants(long[] constants) {
+        return new Intrinsic(this, constants.clone());
+    }
+
+    public String getName() { return name; }
+
+    public List<String> getShape() { return shape; }
+
+    public int getArity() { return arity; }
+
+    /** Runs the closed form: the output goes to the frame's output slot and the cost to its counters. */
+    void apply(long[] arguments, ExecutionContext frame) {
+        long[] args;
+        if (constants.length == 0) {
+            args = arguments.length >= arity ? arguments : Arrays.copyOf(arguments, arity);
+        } else {
+            args = new long[arity + constants.length];
+            System.arraycopy(arguments, 0, args, 0, Math.min(arguments.length, arity));
+            System.arraycopy(constants, 0, args, arity, constants.length);
+        }
+        frame.set(LinkedProgram.OUTPUT_SLOT, result.applyAsLong(args));
+        frame.addCounters(cycles.applyAsLong(args), steps.applyAsLong(args));
+    }
+}
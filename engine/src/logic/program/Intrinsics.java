@@ -0,0 +1,199 @@
+package logic.program;
+
+import logic.instructions.Instruction;
+import logic.instructions.InstructionData;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.variables.Variable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of intrinsics by body shape. A shape is the instruction list with z variables
+ * and labels renamed in order of first use, so the same body matches whatever its
+ * function, temporaries and labels are called. A body that matches no shape as it is
+ * is looked up again with the constants of its constant instructions left open, as #.
+ * A match is only used after the formulas agree with the interpreter on a grid of small inputs.
+ */
+public class Intrinsics {
+    private static final Pattern TEMP = Pattern.compile("\\bz\\d+\\b");
+    // every argument from 0 to GRID - 1 is checked against the interpreter
+    private static final int GRID = 4;
+    private static final long CHECK_CYCLES = 1_000_000;
+    private static final String OPEN = "#";
+    // instructions whose constant an open shape leaves open
+    private static final Set<InstructionData> CONSTANT_DATA = EnumSet.of(
+            InstructionData.CONSTANT_ASSIGNMENT, InstructionData.JUMP_EQUAL_CONSTANT, InstructionData.REPEATED_INCREASE);
+
+    private static final Map<List<String>, Intrinsic> byShape = new ConcurrentHashMap<>();
+    private static volatile int longestShape; // a longer program matches nothing
+
+    static {
+        // y <- x1
+        register(new Intrinsic("Id", List.of(
+                "|ASSIGNMENT|y,x1|0|"),
+                1, a -> a[0], a -> 4, a -> 1));
+        // y <- x1; y <- y + 1
+        register(new Intrinsic("Successor", List.of(
+                "|ASSIGNMENT|y,x1|0|",
+                "|INCREASE|y|0|"),
+                1, a -> a[0] + 1, a -> 5, a -> 2));
+        // y <- x1; z1 <- x2; L1: if z1 = 0 goto EXIT; y <- y + 1; z1 <- z1 - 1; goto L1
+        register(new Intrinsic("Plus", List.of(
+                "|ASSIGNMENT|y,x1|0|",
+                "|ASSIGNMENT|z1,x2|0|",
+                "L1|JUMP_ZERO|z1|0|EXIT",
+                "|INCREASE|y|0|",
+                "|DECREASE|z1|0|",
+                "|GOTO_LABEL||0|L1"),
+                2, a -> a[0] + a[1], a -> 10 + 5 * a[1], a -> 3 + 4 * a[1]));
+        // the same loop decreasing y, which stops at zero
+        register(new Intrinsic("Minus", List.of(
+                "|ASSIGNMENT|y,x1|0|",
+                "|ASSIGNMENT|z1,x2|0|",
+                "L1|JUMP_ZERO|z1|0|EXIT",
+                "|DECREASE|y|0|",
+                "|DECREASE|z1|0|",
+                "|GOTO_LABEL||0|L1"),
+                2, a -> Math.max(a[0] - a[1], 0), a -> 10 + 5 * a[1], a -> 3 + 4 * a[1]));
+        // y <- k, for any constant k
+        register(new Intrinsic("Constant", List.of(
+                "|CONSTANT_ASSIGNMENT|y|#|"),
+                0, a -> a[0], a -> 2, a -> 1));
+        // z1 <- x2; L1: if z1 = 0 goto EXIT; z2 <- x1;
+        // L2: if z2 = 0 goto L3; y <- y + 1; z2 <- z2 - 1; goto L2; L3: z1 <- z1 - 1; goto L1
+        register(new Intrinsic("Multiply", List.of(
+                "|ASSIGNMENT|z1,x2|0|",
+                "L1|JUMP_ZERO|z1|0|EXIT",
+                "|ASSIGNMENT|z2,x1|0|",
+                "L2|JUMP_ZERO|z2|0|L3",
+                "|INCREASE|y|0|",
+                "|DECREASE|z2|0|",
+                "|GOTO_LABEL||0|L2",
+                "L3|DECREASE|z1|0|",
+                "|GOTO_LABEL||0|L1"),
+                2, a -> a[0] * a[1], a -> 6 + a[1] * (10 + 5 * a[0]), a -> 2 + a[1] * (5 + 4 * a[0])));
+        // y <- 1 if x1 = x2: both copies count down together, L2 is reached once z1 is 0
+        register(new Intrinsic("Equal", List.of(
+                "|ASSIGNMENT|z1,x1|0|",
+                "|ASSIGNMENT|z2,x2|0|",
+                "L1|JUMP_ZERO|z1|0|L2",
+                "|JUMP_ZERO|z2|0|EXIT",
+                "|DECREASE|z1|0|",
+                "|DECREASE|z2|0|",
+                "|GOTO_LABEL||0|L1",
+                "L2|JUMP_ZERO|z2|0|L3",
+                "|GOTO_LABEL||0|EXIT",
+                "L3|INCREASE|y|0|"),
+                2, a -> a[0] == a[1] ? 1 : 0,
+                a -> 8 + 7 * Math.min(a[0], a[1]) + (a[0] <= a[1] ? 5 : 4),
+                a -> 2 + 5 * Math.min(a[0], a[1]) + (a[0] <= a[1] ? 3 : 2)));
+    }
+
+    private Intrinsics() {}
+
+    public static synchronized void register(Intrinsic intrinsic) {
+        byShape.put(intrinsic.getShape(), intrinsic);
+        longestShape = Math.max(longestShape, intrinsic.getShape().size());
+    }
+
+    /** Returns the intrinsic matching the linked program, or null if there is none. */
+    static Intrinsic match(Program program, LinkedProgram linked) {
+        if (program.getInstructionRope().size() > longestShape) {
+            return null;
+        }
+        Intrinsic intrinsic = byShape.get(shapeOf(program));
+        if (intrinsic == null) {
+            intrinsic = byShape.get(shapeOf(program, true));
+            if (intrinsic != null) {
+                intrinsic = intrinsic.withConstants(openConstants(program));
+            }
+        }
+        return intrinsic != null && agrees(intrinsic, linked) ? intrinsic : null;
+    }
+
+    /** One line per instruction: label|name|variables|constant|target[|function(arguments)]. */
+    public static List<String> shapeOf(Program program) {
+        return shapeOf(program, false);
+    }
+
+    /** The constants an open shape of program leaves open, in order. */
+    private static long[] openConstants(Program program) {
+        return program.getInstructionRope().stream()
+                .filter(instr -> CONSTANT_DATA.contains(instr.getData()))
+                .mapToLong(Instruction::getConst)
+                .toArray();
+    }
+
+    private static List<String> shapeOf(Program program, boolean open) {
+        Map<String, String> temps = new HashMap<>();
+        Map<String, String> labels = new HashMap<>();
+        List<String> shape = new ArrayList<>();
+        for (Instruction instr : program.getInstructionRope()) {
+            StringJoiner vars = new StringJoiner(",");
+            for (Variable v : instr.getVars()) {
+                vars.add(rename(v.getName(), temps));
+            }
+            String constant = open && CONSTANT_DATA.contains(instr.getData()) ? OPEN : String.valueOf(instr.getConst());
+            String line = label(instr.getSelfLabel(), labels) + "|" + instr.getData() + "|" + vars + "|"
+                    + constant + "|" + label(instr.getTargetLabel(), labels);
+            if (instr instanceof Quote quote) {
+                line += "|" + quote.getFunctionName() + "(" + rename(quote.getFunctionArguments(), temps) + ")";
+            } else if (instr instanceof JumpEqualFunction jef) {
+                line += "|" + jef.getFunctionName() + "(" + rename(jef.getFunctionArguments(), temps) + ")";
+            }
+            shape.add(line);
+        }
+        return shape;
+    }
+
+    private static String label(Label label, Map<String, String> labels) {
+        if (label == null || label == FixedLabel.EMPTY) return "";
+        if (label == FixedLabel.EXIT) return "EXIT";
+        return labels.computeIfAbsent(label.getLabel(), k -> "L" + (labels.size() + 1));
+    }
+
+    private static String rename(String text, Map<String, String> temps) {
+        Matcher m = TEMP.matcher(text);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            m.appendReplacement(sb, temps.computeIfAbsent(m.group(), k -> "z" + (temps.size() + 1)));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static boolean agrees(Intrinsic intrinsic, LinkedProgram linked) {
+        int arity = intrinsic.getArity();
+        long[] args = new long[arity];
+        int points = (int) Math.pow(GRID, arity);
+        RunOptions options = RunOptions.NONE.withMaxCycles(CHECK_CYCLES);
+
+        for (int point = 0; point < points; point++) {
+            for (int i = 0, rest = point; i < arity; i++, rest /= GRID) {
+                args[i] = rest % GRID;
+            }
+            ExecutionContext run = linked.newContext();
+            for (int i = 0; i < arity; i++) {
+                int slot = linked.slotOf("x" + (i + 1));
+                if (slot >= 0) run.set(slot, args[i]);
+            }
+            if (linked.interpret(run, options) != StopReason.COMPLETED) {
+                return false;
+            }
+
+            ExecutionContext closed = linked.newContext();
+            intrinsic.apply(args, closed);
+            if (run.get(LinkedProgram.OUTPUT_SLOT) != closed.get(LinkedProgram.OUTPUT_SLOT)
+                    || run.getCycles() != closed.getCycles() || run.getSteps() != closed.getSteps()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
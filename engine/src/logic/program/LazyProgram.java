@@ -0,0 +1,84 @@
+package logic.program;
+
+import logic.instructions.Instruction;
+import logic.labels.Label;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A program that is built the first time anything but its name is asked for. Function
+ * libraries register their functions this way, so a function that is never quoted is
+ * never built. Every call after the first goes to the built program.
+ */
+public class LazyProgram implements Program {
+    private final String name;
+    private final Supplier<? extends Program> builder;
+    private volatile Program program;
+
+    public LazyProgram(String name, Supplier<? extends Program> builder) {
+        this.name = name;
+        this.builder = builder;
+    }
+
+    /** For subclasses that override build(). */
+    protected LazyProgram(String name) {
+        this(name, null);
+    }
+
+    protected Program build() {
+        return builder.get();
+    }
+
+    public boolean isBuilt() {
+        return program != null;
+    }
+
+    protected Program program() {
+        Program result = program;
+        if (result == null) {
+            synchronized (this) {
+                result = program;
+                if (result == null) {
+                    result = this.build();
+                    program = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void run() { program().run(); }
+
+    @Override
+    public LinkedProgram link() { return program().link(); }
+
+    @Override
+    public CompactProgram compact() { return program().compact(); }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public List<Instruction> getInstructions() { return program().getInstructions(); }
+
+    @Override
+    public Map<Label, Instruction> getLabels() { return program().getLabels(); }
+
+    @Override
+    public InstructionRope getInstructionRope() { return program().getInstructionRope(); }
+
+    @Override
+    public int indexOf(Label label) { return program().indexOf(label); }
+
+    @Override
+    public int maxDegree() { return program().maxDegree(); }
+
+    @Override
+    public int cycles() { return program().cycles(); }
+
+    @Override
+    public boolean checkLabels() { return program().checkLabels(); }
+}
@@ -0,0 +1,438 @@
+package logic.program;
+
+import logic.instructions.Instruction;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.program.compiler.CompiledProgram;
+import logic.program.compiler.ProgramCompiler;
+import logic.variables.Var;
+import logic.variables.Variable;
+import logic.variables.VariableType;
+
+import java.util.*;
+
+/**
+ * Execution form of a program: every jump target is resolved once to an
+ * instruction index and every variable to a register slot, so running the
+ * program never searches the instruction list or touches shared Var objects.
+ * Slot 0 always holds y, followed by the x variables and then the z variables.
+ * QUOTE and JUMP_EQUAL_FUNCTION run the callee's linked program in a register
+ * window of their own, so calls work without expanding the program.
+ */
+public class LinkedProgram {
+    public static final int EXIT_PC = -1;
+    public static final int UNKNOWN_PC = -2;
+    public static final int OUTPUT_SLOT = 0;
+
+    // runs interpreted before the program is handed to the bytecode compiler
+    private static final int COMPILE_THRESHOLD = 3;
+    // dispatches between two checks of the run limits
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final String name;
+    private final Instruction[] code;
+    private final int[] targets;
+
+    private final int[] ops;
+    private final int[] first;
+    private final int[] second;
+    private final long[] constants;
+    private final int[] costs;
+    private final int[][] loopSlots;
+    private final long[][] loopDeltas;
+    private final CallSite[] calls;
+    private final CallMemo callMemo = new CallMemo();
+    private volatile Intrinsic intrinsic;
+    private volatile boolean intrinsicMatched;
+
+    private final Variable[] slots;
+    private final Map<String, Integer> slotsByName;
+
+    private volatile CompiledProgram compiled;
+    private volatile boolean compileAttempted;
+    private int runs;
+
+    /** Links program, binding its call arguments to the slots of the result. */
+    public static LinkedProgram of(Program program) {
+        LinkedProgram result = new LinkedProgram(program);
+        for (CallSite call : result.calls) {
+            if (call != null) {
+                call.bind(result);
+            }
+        }
+        return result;
+    }
+
+    private LinkedProgram(Program program) {
+        // the stored instructions are shared with other degrees, only their numbers may differ
+        this.name = program.getName();
+        this.code = program.getInstructionRope().toArray(new Instruction[0]);
+        this.targets = new int[code.length];
+        this.ops = new int[code.length];
+        this.first = new int[code.length];
+        this.second = new int[code.length];
+        this.constants = new long[code.length];
+        this.costs = new int[code.length];
+        this.loopSlots = new int[code.length][];
+        this.loopDeltas = new long[code.length][];
+        this.calls = new CallSite[code.length];
+
+        // call arguments are read from the caller, so they need slots of their own
+        List<String> argumentNames = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] instanceof Quote quote) {
+                calls[pc] = CallSite.parse(quote.getFunctionName(), quote.getFunctionArguments());
+            } else if (code[pc] instanceof JumpEqualFunction jef) {
+                calls[pc] = CallSite.parse(jef.getFunctionName(), jef.getFunctionArguments());
+            }
+            if (calls[pc] != null) {
+                calls[pc].collectVariables(argumentNames);
+            }
+        }
+
+        this.slots = layoutSlots(code, argumentNames);
+        this.slotsByName = new HashMap<>();
+        for (int i = 0; i < slots.length; i++) {
+            slotsByName.put(slots[i].getName(), i);
+        }
+
+        for (int pc = 0; pc < code.length; pc++) {
+            Instruction instr = code[pc];
+            List<Variable> vars = instr.getVars();
+            ops[pc] = Opcodes.of(instr.getData());
+            first[pc] = vars.isEmpty() ? OUTPUT_SLOT : slotsByName.get(vars.get(0).getName());
+            second[pc] = vars.size() < 2 ? first[pc] : slotsByName.get(vars.get(1).getName());
+            constants[pc] = instr.getConst();
+            targets[pc] = resolve(instr.getTargetLabel(), pc, program);
+            costs[pc] = instr.getCycles();
+        }
+
+        fuseLoops();
+    }
+
+    /**
+     * Replaces the head of every counted loop found by LoopAnalyzer with a superinstruction
+     * that runs all iterations at once. The loops left by the ZERO_VARIABLE, ASSIGNMENT and
+     * JUMP_EQUAL_VARIABLE expansions get dedicated opcodes, any other counted loop keeps its
+     * per-iteration deltas in loopSlots[] and loopDeltas[]. The body stays in place for jumps
+     * into its middle; the fused head stores the cycles of one iteration in constants[] and
+     * the index after the loop in targets[], so the loop is targets[pc] - pc instructions long.
+     */
+    private void fuseLoops() {
+        LoopAnalyzer analyzer = new LoopAnalyzer(ops, first, constants, targets, costs);
+        for (int head = 0; head < code.length; head++) {
+            LoopAnalyzer.CountedLoop loop = analyzer.analyze(head);
+            if (loop == null) continue;
+
+            int fused = Opcodes.COUNTED_LOOP;
+            int other = loop.counter;
+            if (loop.slots.length == 0) {
+                fused = Opcodes.ZERO_LOOP;
+            } else if (loop.slots.length == 1 && Math.abs(loop.deltas[0]) == 1) {
+                fused = loop.deltas[0] > 0 ? Opcodes.TRANSFER_LOOP : Opcodes.DECREMENT_LOOP;
+                other = loop.slots[0];
+            } else {
+                loopSlots[head] = loop.slots;
+                loopDeltas[head] = loop.deltas;
+            }
+
+            ops[head] = fused;
+            first[head] = loop.counter;
+            second[head] = other;
+            constants[head] = loop.iterationCycles;
+            targets[head] = loop.exit;
+            costs[head] = 0;
+        }
+    }
+
+    private static Variable[] layoutSlots(Instruction[] code, List<String> argumentNames) {
+        Variable output = null;
+        SortedMap<Integer, Variable> inputs = new TreeMap<>();
+        SortedMap<Integer, Variable> temps = new TreeMap<>();
+        Map<String, Variable> others = new LinkedHashMap<>();
+
+        List<Variable> used = new ArrayList<>();
+        for (Instruction instr : code) {
+            used.addAll(instr.getVars());
+        }
+        for (String name : argumentNames) {
+            Variable v = new Var(name);
+            if (v.getType() != null) {
+                used.add(v);
+            }
+        }
+
+        for (Variable v : used) {
+            if (v.getType() == VariableType.OUTPUT) {
+                if (output == null) output = v;
+            } else if (v.getType() == VariableType.INPUT) {
+                inputs.putIfAbsent(v.getNum(), v);
+            } else if (v.getType() == VariableType.TEMP) {
+                temps.putIfAbsent(v.getNum(), v);
+            } else {
+                others.putIfAbsent(v.getName(), v); // placeholders such as the QUOTE join variable
+            }
+        }
+
+        List<Variable> layout = new ArrayList<>();
+        layout.add(output != null ? output : new Var(VariableType.OUTPUT, 0));
+        layout.addAll(inputs.values());
+        layout.addAll(temps.values());
+        layout.addAll(others.values());
+        return layout.toArray(new Variable[0]);
+    }
+
+    private static int resolve(Label label, int pc, Program program) {
+        if (label == FixedLabel.EXIT) return EXIT_PC;
+        if (label == FixedLabel.EMPTY) return pc + 1;
+
+        int target = program.indexOf(label);
+        return target < 0 ? UNKNOWN_PC : target;
+    }
+
+    public String getName() { return name; }
+
+    public int size() { return code.length; }
+
+    /** The instruction at pc as stored, its number may belong to an earlier degree. */
+    public Instruction getInstruction(int pc) { return code[pc]; }
+
+    public int getTarget(int pc) { return targets[pc]; }
+
+    public int getOpcode(int pc) { return ops[pc]; }
+
+    public int getFirstSlot(int pc) { return first[pc]; }
+
+    public int getSecondSlot(int pc) { return second[pc]; }
+
+    public long getConstant(int pc) { return constants[pc]; }
+
+    public int getCycleCost(int pc) { return costs[pc]; }
+
+    /** Slots changed by the COUNTED_LOOP at pc, other than its counter. */
+    public int[] getLoopSlots(int pc) { return loopSlots[pc]; }
+
+    /** Change of each loop slot per iteration; negative deltas stop at zero. */
+    public long[] getLoopDeltas(int pc) { return loopDeltas[pc]; }
+
+    public int getSlotCount() { return slots.length; }
+
+    /** Results of this program when it is called as a function. */
+    CallMemo getCallMemo() { return callMemo; }
+
+    /** Closed form of this program when it is called as a function, or null. */
+    public Intrinsic getIntrinsic() { return intrinsic; }
+
+    /**
+     * Looks program, whose linked form this is, up in Intrinsics. Only callees are matched,
+     * the first time a call site resolves them, so linking a main program or an expansion
+     * never builds a shape.
+     */
+    void matchIntrinsic(Program program) {
+        if (!intrinsicMatched) {
+            synchronized (this) {
+                if (!intrinsicMatched) {
+                    intrinsic = Intrinsics.match(program, this);
+                    intrinsicMatched = true;
+                }
+            }
+        }
+    }
+
+    public Variable getSlotVariable(int slot) { return slots[slot]; }
+
+    /** Slot of the named variable, or -1 if the program never uses it. */
+    public int slotOf(String variableName) {
+        return slotsByName.getOrDefault(variableName, -1);
+    }
+
+    public ExecutionContext newContext() {
+        return new ExecutionContext(slots.length);
+    }
+
+    /** Copies the current values of the program's Var objects into the context. */
+    public void loadVariables(ExecutionContext ctx) {
+        for (int i = 0; i < slots.length; i++) {
+            ctx.set(i, slots[i].getValue());
+        }
+    }
+
+    /** Copies the context back into the program's Var objects. */
+    public void storeVariables(ExecutionContext ctx) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i].setValue(ctx.get(i));
+        }
+    }
+
+    public void run(ExecutionContext ctx) {
+        run(ctx, RunOptions.NONE);
+    }
+
+    /** Runs the program until it exits or one of the limits in options stops it. */
+    public StopReason run(ExecutionContext ctx, RunOptions options) {
+        if (options.hasLimits()) {
+            return interpret(ctx, options); // compiled code checks the token only
+        }
+
+        CompiledProgram tier = compiled;
+        if (tier == null && !compileAttempted && ++runs >= COMPILE_THRESHOLD) {
+            tier = compile();
+        }
+
+        if (tier != null) {
+            return tier.run(ctx, options.getToken());
+        }
+        return interpret(ctx, options);
+    }
+
+    private synchronized CompiledProgram compile() {
+        if (!compileAttempted) {
+            compiled = ProgramCompiler.compile(this);
+            compileAttempted = true;
+        }
+        return compiled;
+    }
+
+    public void interpret(ExecutionContext ctx) {
+        interpret(ctx, RunOptions.NONE);
+    }
+
+    public StopReason interpret(ExecutionContext ctx, RunOptions options) {
+        options = options.started();
+        long[] r = ctx.getRegisters();
+        long maxCycles = options.getMaxCycles();
+        long maxSteps = options.getMaxSteps();
+        long deadline = options.getDeadline();
+        StopReason reason = StopReason.COMPLETED;
+        long cycles = 0;
+        long steps = 0;
+        int check = 1; // a call may start with its budget already used up
+        int pc = 0;
+
+        dispatch:
+        while (0 <= pc && pc < code.length) {
+            if (--check == 0) {
+                check = CHECK_INTERVAL;
+                reason = checkLimits(options, cycles, steps, deadline);
+                if (reason != StopReason.COMPLETED) break;
+            }
+            cycles += costs[pc];
+            steps++;
+            switch (ops[pc]) {
+                case Opcodes.INC -> {
+                    r[first[pc]]++;
+                    pc++;
+                }
+                case Opcodes.ADD -> {
+                    r[first[pc]] += constants[pc];
+                    pc++;
+                }
+                case Opcodes.DEC -> {
+                    if (r[first[pc]] > 0) r[first[pc]]--;
+                    pc++;
+                }
+                case Opcodes.JNZ -> pc = r[first[pc]] != 0 ? jump(pc) : pc + 1;
+                case Opcodes.ZERO -> {
+                    r[first[pc]] = 0;
+                    pc++;
+                }
+                case Opcodes.GOTO -> pc = jump(pc);
+                case Opcodes.ASSIGN -> {
+                    r[first[pc]] = r[second[pc]];
+                    pc++;
+                }
+                case Opcodes.CONST -> {
+                    r[first[pc]] = Math.max(constants[pc], 0);
+                    pc++;
+                }
+                case Opcodes.JZ -> pc = r[first[pc]] == 0 ? jump(pc) : pc + 1;
+                case Opcodes.JEC -> pc = r[first[pc]] == constants[pc] ? jump(pc) : pc + 1;
+                case Opcodes.JEV -> pc = r[first[pc]] == r[second[pc]] ? jump(pc) : pc + 1;
+                case Opcodes.CALL, Opcodes.JEF_CALL -> {
+                    CallSite call = calls[pc];
+                    ExecutionContext frame = ctx.enterCall(call.resolve().getSlotCount());
+                    StopReason callReason = call.invoke(r, frame, options.remaining(cycles, steps));
+                    cycles += frame.getCycles();
+                    steps += frame.getSteps();
+                    if (callReason != StopReason.COMPLETED) {
+                        reason = callReason;
+                        break dispatch;
+                    }
+                    long value = frame.get(OUTPUT_SLOT);
+                    if (ops[pc] == Opcodes.CALL) {
+                        r[first[pc]] = value;
+                        pc++;
+                    } else {
+                        pc = r[first[pc]] == value ? jump(pc) : pc + 1;
+                    }
+                    // memo and intrinsic answers never check the limits themselves
+                    reason = checkLimits(options, cycles, steps, deadline);
+                    if (reason != StopReason.COMPLETED) break dispatch;
+                }
+                // the body always runs once, even when the counter starts at zero
+                case Opcodes.ZERO_LOOP, Opcodes.TRANSFER_LOOP, Opcodes.DECREMENT_LOOP, Opcodes.COUNTED_LOOP -> {
+                    long iterations = Math.max(r[first[pc]], 1);
+                    long length = targets[pc] - pc;
+                    long byCycles = constants[pc] == 0 ? iterations : (maxCycles - cycles) / constants[pc];
+                    long bySteps = (maxSteps - (steps - 1)) / length;
+
+                    if (iterations > byCycles || iterations > bySteps) {
+                        // stop at the loop head after the iterations the budget allows
+                        long allowed = Math.max(Math.min(byCycles, bySteps), 0);
+                        runLoop(r, pc, allowed);
+                        cycles += allowed * constants[pc];
+                        steps += allowed * length - 1;
+                        reason = byCycles <= bySteps ? StopReason.CYCLE_LIMIT : StopReason.STEP_LIMIT;
+                        break dispatch;
+                    }
+                    runLoop(r, pc, iterations);
+                    cycles += iterations * constants[pc];
+                    steps += iterations * length - 1;
+                    pc = targets[pc];
+                }
+                default -> pc++;
+            }
+        }
+        ctx.addCounters(cycles, steps);
+        return reason;
+    }
+
+    /** Applies the given number of iterations of the fused loop whose head is pc. */
+    private void runLoop(long[] r, int pc, long iterations) {
+        r[first[pc]] = Math.max(r[first[pc]] - iterations, 0);
+        switch (ops[pc]) {
+            case Opcodes.TRANSFER_LOOP -> r[second[pc]] += iterations;
+            case Opcodes.DECREMENT_LOOP -> r[second[pc]] = Math.max(r[second[pc]] - iterations, 0);
+            case Opcodes.COUNTED_LOOP -> {
+                int[] changed = loopSlots[pc];
+                long[] deltas = loopDeltas[pc];
+                for (int i = 0; i < changed.length; i++) {
+                    r[changed[i]] = Math.max(r[changed[i]] + iterations * deltas[i], 0);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private static StopReason checkLimits(RunOptions options, long cycles, long steps, long deadline) {
+        if (cycles >= options.getMaxCycles()) return StopReason.CYCLE_LIMIT;
+        if (steps >= options.getMaxSteps()) return StopReason.STEP_LIMIT;
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) return StopReason.DEADLINE;
+
+        CancellationToken token = options.getToken();
+        if ((token != null && token.isCancelled()) || Thread.currentThread().isInterrupted()) {
+            return StopReason.CANCELLED;
+        }
+        return StopReason.COMPLETED;
+    }
+
+    private int jump(int pc) {
+        int target = targets[pc];
+        if (target == UNKNOWN_PC) {
+            throw new IllegalStateException("Unknown label: " + code[pc].getTargetLabel().getLabel());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,92 @@
+package logic.program;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds counted loops in the basic instructions of a linked program: a straight run of
+ * INCREASE, REPEATED_INCREASE, DECREASE and NEUTRAL instructions closed by a JUMP_NOT_ZERO back to its first
+ * instruction, where the tested variable is decreased exactly once per iteration and
+ * every other variable only goes up or only goes down. Such a loop runs max(counter, 1)
+ * times, so its effect and its cycles have a closed form.
+ */
+class LoopAnalyzer {
+    private final int[] ops;
+    private final int[] first;
+    private final long[] constants;
+    private final int[] targets;
+    private final int[] costs;
+
+    LoopAnalyzer(int[] ops, int[] first, long[] constants, int[] targets, int[] costs) {
+        this.ops = ops;
+        this.constants = constants;
+        this.first = first;
+        this.targets = targets;
+        this.costs = costs;
+    }
+
+    /** Returns the loop starting at head, or null if head does not start a counted loop. */
+    CountedLoop analyze(int head) {
+        int jnz = head;
+        while (jnz < ops.length && isStraight(ops[jnz])) {
+            jnz++;
+        }
+        if (jnz == head || jnz >= ops.length || ops[jnz] != Opcodes.JNZ || targets[jnz] != head) {
+            return null;
+        }
+
+        int counter = first[jnz];
+        long iterationCycles = costs[jnz];
+        Map<Integer, Long> deltas = new LinkedHashMap<>();
+        Map<Integer, Boolean> decreasing = new LinkedHashMap<>();
+
+        for (int pc = head; pc < jnz; pc++) {
+            iterationCycles += costs[pc];
+            if (ops[pc] == Opcodes.NOP) continue;
+
+            int slot = first[pc];
+            boolean dec = ops[pc] == Opcodes.DEC;
+            Boolean seen = decreasing.putIfAbsent(slot, dec);
+            if (seen != null && seen != dec) {
+                return null; // clamping at zero makes mixed updates order dependent
+            }
+            deltas.merge(slot, ops[pc] == Opcodes.ADD ? constants[pc] : 1L, Long::sum);
+        }
+
+        if (decreasing.get(counter) != Boolean.TRUE || deltas.get(counter) != 1) {
+            return null;
+        }
+        deltas.remove(counter);
+
+        int[] slots = new int[deltas.size()];
+        long[] steps = new long[deltas.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+            slots[i] = entry.getKey();
+            steps[i] = decreasing.get(entry.getKey()) ? -entry.getValue() : entry.getValue();
+            i++;
+        }
+        return new CountedLoop(counter, jnz + 1, slots, steps, iterationCycles);
+    }
+
+    private static boolean isStraight(int op) {
+        return op == Opcodes.INC || op == Opcodes.ADD || op == Opcodes.DEC || op == Opcodes.NOP;
+    }
+
+    /** Effect of one iteration: the counter drops by one and every slot moves by its delta. */
+    static class CountedLoop {
+        final int counter;
+        final int exit;
+        final int[] slots;
+        final long[] deltas;
+        final long iterationCycles;
+
+        CountedLoop(int counter, int exit, int[] slots, long[] deltas, long iterationCycles) {
+            this.counter = counter;
+            this.exit = exit;
+            this.slots = slots;
+            this.deltas = deltas;
+            this.iterationCycles = iterationCycles;
+        }
+    }
+}
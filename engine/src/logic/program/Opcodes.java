@@ -0,0 +1,53 @@
+package logic.program;
+
+import logic.instructions.InstructionData;
+
+/**
+ * Integer opcodes used by LinkedProgram's dispatch loop.
+ */
+public final class Opcodes {
+    public static final int INC = 0;
+    public static final int DEC = 1;
+    public static final int JNZ = 2;
+    public static final int NOP = 3;
+    public static final int ZERO = 4;
+    public static final int GOTO = 5;
+    public static final int ASSIGN = 6;
+    public static final int CONST = 7;
+    public static final int JZ = 8;
+    public static final int JEC = 9;
+    public static final int JEV = 10;
+
+    // superinstructions that replace the head of a recognized expansion loop
+    public static final int ZERO_LOOP = 11;       // L: v--; IF v != 0 GOTO L
+    public static final int TRANSFER_LOOP = 12;   // L: y--; x++; IF y != 0 GOTO L
+    public static final int DECREMENT_LOOP = 13;  // L: a--; b--; IF b != 0 GOTO L
+    public static final int COUNTED_LOOP = 14;    // any other loop accepted by LoopAnalyzer
+
+    // function calls run in their own register window
+    public static final int CALL = 15;            // QUOTE: v <- (f, args)
+    public static final int JEF_CALL = 16;        // JUMP_EQUAL_FUNCTION: IF v = (f, args) GOTO L
+
+    public static final int ADD = 17;             // v <- v + k, one line for k increases
+
+    private Opcodes() {}
+
+    public static int of(InstructionData data) {
+        return switch (data) {
+            case INCREASE -> INC;
+            case DECREASE -> DEC;
+            case JUMP_NOT_ZERO -> JNZ;
+            case NO_OP -> NOP;
+            case REPEATED_INCREASE -> ADD;
+            case QUOTE -> CALL;
+            case ZERO_VARIABLE -> ZERO;
+            case GOTO_LABEL -> GOTO;
+            case ASSIGNMENT -> ASSIGN;
+            case CONSTANT_ASSIGNMENT -> CONST;
+            case JUMP_ZERO -> JZ;
+            case JUMP_EQUAL_CONSTANT -> JEC;
+            case JUMP_EQUAL_VARIABLE -> JEV;
+            case JUMP_EQUAL_FUNCTION -> JEF_CALL;
+        };
+    }
+}
@@ -8,12 +8,19 @@ import java.util.Map;
 
 public interface Program {
     public void run();
-    void addInstruction(Instruction instruction);
+    LinkedProgram link();
+    CompactProgram compact();
 
     String getName();
     List<Instruction> getInstructions();
     Map<Label, Instruction> getLabels();
 
+    /** The stored instructions, whose numbers may belong to an earlier degree. */
+    InstructionRope getInstructionRope();
+
+    /** Index of the instruction carrying label, or -1. */
+    int indexOf(Label label);
+
     int maxDegree();
     int cycles();
 
@@ -0,0 +1,92 @@
+package logic.program;
+
+import java.time.Duration;
+
+/**
+ * Limits of a single run. Limits are checked every few thousand instructions and after
+ * every function call, so a run may pass its cycle or step budget by that much before it
+ * stops. The budgets and the deadline cover the whole run, the functions it calls included.
+ */
+public class RunOptions {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final RunOptions NONE = new RunOptions(UNLIMITED, UNLIMITED, null, null);
+
+    private final long maxCycles;
+    private final long maxSteps;
+    private final Duration timeout;
+    private final CancellationToken token;
+    private final long deadline; // System.nanoTime() the run must stop at, 0 until the run starts
+
+    public RunOptions(long maxCycles, long maxSteps, Duration timeout, CancellationToken token) {
+        this(maxCycles, maxSteps, timeout, token, 0);
+    }
+
+    private RunOptions(long maxCycles, long maxSteps, Duration timeout, CancellationToken token, long deadline) {
+        this.maxCycles = maxCycles;
+        this.maxSteps = maxSteps;
+        this.timeout = timeout;
+        this.token = token;
+        this.deadline = deadline;
+    }
+
+    public long getMaxCycles() { return maxCycles; }
+
+    public long getMaxSteps() { return maxSteps; }
+
+    /** Wall-clock time a run may take, or null for no deadline. */
+    public Duration getTimeout() { return timeout; }
+
+    public CancellationToken getToken() { return token; }
+
+    /** The nanoTime deadline fixed by started(), or 0 when there is none. */
+    long getDeadline() { return deadline; }
+
+    /** These options with the deadline fixed from now, unless an outer run already fixed it. */
+    RunOptions started() {
+        if (timeout == null || deadline != 0) {
+            return this;
+        }
+        return new RunOptions(maxCycles, maxSteps, timeout, token, System.nanoTime() + timeout.toNanos());
+    }
+
+    /** The budget left to a call made after the caller used the given cycles and steps. */
+    RunOptions remaining(long cycles, long steps) {
+        if (maxCycles == UNLIMITED && maxSteps == UNLIMITED) {
+            return this;
+        }
+        return new RunOptions(left(maxCycles, cycles), left(maxSteps, steps), timeout, token, deadline);
+    }
+
+    private static long left(long budget, long used) {
+        return budget == UNLIMITED ? UNLIMITED : Math.max(budget - used, 0);
+    }
+
+    /**
+     * Whether a run that uses the given cycles and steps finishes within the budgets. Such a
+     * run is never stopped by them, however often they are checked.
+     */
+    public boolean allows(long cycles, long steps) {
+        return cycles < maxCycles && steps < maxSteps;
+    }
+
+    /** Whether a cycle budget, a step budget or a deadline is set. A token alone is not a limit. */
+    public boolean hasLimits() {
+        return maxCycles != UNLIMITED || maxSteps != UNLIMITED || timeout != null;
+    }
+
+    public RunOptions withMaxCycles(long maxCycles) {
+        return new RunOptions(maxCycles, maxSteps, timeout, token);
+    }
+
+    public RunOptions withMaxSteps(long maxSteps) {
+        return new RunOptions(maxCycles, maxSteps, timeout, token);
+    }
+
+    public RunOptions withTimeout(Duration timeout) {
+        return new RunOptions(maxCycles, maxSteps, timeout, token);
+    }
+
+    public RunOptions withToken(CancellationToken token) {
+        return new RunOptions(maxCycles, maxSteps, timeout, token);
+    }
+}
@@ -6,67 +6,88 @@ import logic.labels.Label;
 
 import java.util.*;
 
+/**
+ * A program built from the loader or from an expansion. Instructions are kept in an
+ * InstructionRope, so an expansion shares the unchanged runs of the degree below, and
+ * labels are kept as instruction indexes. The first call to getInstructions() numbers each
+ * instruction by its position, copying only those whose stored number belongs to another
+ * degree, and keeps that array for later calls; code that only reads the instructions should
+ * use the rope and take the line of index i as i + 1. The lists handed out are read-only,
+ * which makes a finished program safe to share between threads.
+ */
 public class SProgram implements Program {
-    private String name;
-    private List<Instruction> instructions;
-    private Map<Label, Instruction> labels;
+    private final String name;
+    private final InstructionRope instructions;
+    private final Map<Label, Integer> labels;
+    private volatile LinkedProgram linked;
+    private volatile CompactProgram compact;
+    private volatile Instruction[] numbered;
 
     public SProgram(String name, Map<Label, Instruction> labels) {
         this.name = name;
-        this.instructions = new ArrayList<>();
-        this.labels = labels; // labels must map each label to its instruction
+        this.instructions = InstructionRope.empty();
+        this.labels = new HashMap<>();
+        labels.forEach((label, instr) -> this.labels.put(label, -1)); // not in the program yet
     }
 
     public SProgram(String name, Map<Label, Instruction> labels, List<Instruction> instructions) {
         this.name = name;
-        this.instructions = instructions;
-        this.labels = labels; // labels must map each label to its instruction
+        this.labels = new HashMap<>(); // labels must map each label to its instruction
 
+        Map<Instruction, Integer> positions = new IdentityHashMap<>();
+        List<Instruction> numbered = new ArrayList<>(instructions.size());
         for (int i = 0; i < instructions.size(); i++) { // number instructions
-            instructions.get(i).setNum(i + 1);
+            positions.putIfAbsent(instructions.get(i), i);
+            numbered.add(instructions.get(i).withNum(i + 1));
         }
+        this.instructions = InstructionRope.of(numbered);
+        labels.forEach((label, instr) -> this.labels.put(label, positions.getOrDefault(instr, -1)));
     }
 
+    /** A program over instructions, where labels maps each label to the index of its instruction. */
+    public SProgram(String name, InstructionRope instructions, Map<Label, Integer> labels) {
+        this.name = name;
+        this.instructions = instructions;
+        this.labels = new HashMap<>(labels);
+    }
 
     @Override
     public void run() {
-        Label nextLabel;
-        int pc = 0;
-
-        while (0 <= pc && pc < instructions.size()) {
-            Instruction current = instructions.get(pc);
-            nextLabel = current.execute();
-            //System.out.println("pc = " + pc); // for debugging
-            if (FixedLabel.EXIT == nextLabel) {
-                break;
-            }
+        LinkedProgram program = this.link();
+        ExecutionContext ctx = program.newContext();
+        program.loadVariables(ctx);
+        program.run(ctx);
+        program.storeVariables(ctx);
+    }
 
-            if (FixedLabel.EMPTY != nextLabel) {
-                Instruction target = labels.get(nextLabel);
-                if (target == null) {
-                    throw new IllegalStateException("Unknown label: " + nextLabel.getLabel());
-                }
-                int idx = instructions.indexOf(target);
-                if (idx < 0) {
-                    throw new IllegalStateException("Label not in instruction list: " + nextLabel.getLabel());
+    @Override
+    public LinkedProgram link() {
+        LinkedProgram result = linked;
+        if (result == null) {
+            synchronized (this) {
+                result = linked;
+                if (result == null) {
+                    result = LinkedProgram.of(this);
+                    linked = result;
                 }
-                pc = idx;
-            } else {
-                pc += 1;
             }
         }
+        return result;
     }
 
     @Override
-    public void addInstruction(Instruction instruction) {
-        // the variables in instruction must be the same instances saved in
-        // tempVars and inputVars - the provided lists of variables in the program
-        Label selfLabel = instruction.getSelfLabel();
-        if (selfLabel != FixedLabel.EMPTY) {
-            labels.put(selfLabel, instruction);
+    public CompactProgram compact() {
+        CompactProgram result = compact;
+        if (result == null) {
+            synchronized (this) {
+                result = compact;
+                if (result == null) {
+                    result = new CompactProgram(this);
+                    compact = result;
+                }
+            }
         }
-        instructions.add(instruction);
-        instruction.setNum(instructions.size());
+        return result;
     }
 
     @Override
@@ -76,12 +97,44 @@ public class SProgram implements Program {
 
     @Override
     public List<Instruction> getInstructions() {
+        Instruction[] result = numbered;
+        if (result == null) {
+            synchronized (this) {
+                result = numbered;
+                if (result == null) {
+                    result = new Instruction[instructions.size()];
+                    int index = 0;
+                    for (Instruction instr : instructions) {
+                        result[index] = instr.withNum(index + 1);
+                        index++;
+                    }
+                    numbered = result;
+                }
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    @Override
+    public InstructionRope getInstructionRope() {
         return instructions;
     }
 
     @Override
     public Map<Label, Instruction> getLabels() {
-        return labels;
+        List<Instruction> numbered = getInstructions();
+        Map<Label, Instruction> result = new HashMap<>();
+        labels.forEach((label, index) -> {
+            if (index >= 0 && index < numbered.size()) {
+                result.put(label, numbered.get(index));
+            }
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public int indexOf(Label label) {
+        return labels.getOrDefault(label, -1);
     }
 
     @Override
@@ -0,0 +1,12 @@
+package logic.program;
+
+/**
+ * Why a run returned.
+ */
+public enum StopReason {
+    COMPLETED,
+    CYCLE_LIMIT,
+    STEP_LIMIT,
+    DEADLINE,
+    CANCELLED
+}
@@ -0,0 +1,284 @@
+package logic.program.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Minimal class file emitter: one class holding one static method taking reference
+ * parameters, whose locals never change type. Every jump target therefore shares the
+ * same stack map frame.
+ */
+class ClassWriter {
+    static final int LCONST_0 = 0x09;
+    static final int LCONST_1 = 0x0a;
+    static final int LDC2_W = 0x14;
+    static final int LLOAD = 0x16;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int ALOAD_2 = 0x2c;
+    static final int LALOAD = 0x2f;
+    static final int LSTORE = 0x37;
+    static final int LASTORE = 0x50;
+    static final int DUP2 = 0x5c;
+    static final int LADD = 0x61;
+    static final int LSUB = 0x65;
+    static final int LMUL = 0x69;
+    static final int L2I = 0x88;
+    static final int LCMP = 0x94;
+    static final int IFNE = 0x9a;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int INVOKESTATIC = 0xb8;
+
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int WIDE = 0xc4;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<int[]> fixups = new ArrayList<>();   // {opcode offset, label}
+    private final List<Integer> labelOffsets = new ArrayList<>();
+    private final Set<Integer> frameLabels = new HashSet<>();
+    private final String className;
+
+    ClassWriter(String className) {
+        this.className = className;
+    }
+
+    int newLabel() {
+        labelOffsets.add(-1);
+        return labelOffsets.size() - 1;
+    }
+
+    void mark(int label) {
+        labelOffsets.set(label, code.size());
+    }
+
+    /** Requests a frame at a label that is only reached by jumps, such as the code after a goto. */
+    void frame(int label) {
+        frameLabels.add(label);
+    }
+
+    int codeSize() {
+        return code.size();
+    }
+
+    void op(int opcode) {
+        code.write(opcode);
+    }
+
+    void jump(int opcode, int label) {
+        fixups.add(new int[] { code.size(), label });
+        code.write(opcode);
+        code.write(0);
+        code.write(0);
+    }
+
+    void pushInt(int value) {
+        if (-1 <= value && value <= 5) {
+            code.write(0x03 + value); // iconst_<n>
+        } else if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            writeShort(value);
+        } else {
+            code.write(LDC_W);
+            writeShort(pool.integer(value));
+        }
+    }
+
+    void pushLong(long value) {
+        if (value == 0 || value == 1) {
+            code.write(value == 0 ? LCONST_0 : LCONST_1);
+        } else {
+            code.write(LDC2_W);
+            writeShort(pool.longValue(value));
+        }
+    }
+
+    /** lload / lstore with the short forms and the wide prefix where needed. */
+    void local(int opcode, int index) {
+        if (index <= 3) {
+            code.write((opcode == LLOAD ? 0x1e : 0x3f) + index);
+        } else if (index <= 0xff) {
+            code.write(opcode);
+            code.write(index);
+        } else {
+            code.write(WIDE);
+            code.write(opcode);
+            writeShort(index);
+        }
+    }
+
+    void invokeStatic(String owner, String name, String descriptor) {
+        code.write(INVOKESTATIC);
+        writeShort(pool.methodRef(owner, name, descriptor));
+    }
+
+    private void writeShort(int value) {
+        code.write((value >>> 8) & 0xff);
+        code.write(value & 0xff);
+    }
+
+    /**
+     * Assembles {@code public static <name><descriptor>} whose first locals are the reference
+     * parameters of the given internal class names, followed by {@code longLocals} long locals.
+     */
+    byte[] toClassFile(String methodName, String descriptor, String[] parameters, int maxStack, int longLocals)
+            throws IOException {
+        byte[] body = code.toByteArray();
+        for (int[] fixup : fixups) {
+            int offset = labelOffsets.get(fixup[1]) - fixup[0];
+            body[fixup[0] + 1] = (byte) (offset >> 8);
+            body[fixup[0] + 2] = (byte) offset;
+        }
+
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef("java/lang/Object");
+        int nameIndex = pool.utf8(methodName);
+        int descriptorIndex = pool.utf8(descriptor);
+        int codeName = pool.utf8("Code");
+        int frameName = pool.utf8("StackMapTable");
+        int[] parameterTypes = new int[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameterTypes[i] = pool.classRef(parameters[i]);
+        }
+        byte[] frames = stackMapTable(parameterTypes, longLocals);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(61);
+        pool.writeTo(out);
+        out.writeShort(0x0031);               // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);                    // interfaces
+        out.writeShort(0);                    // fields
+        out.writeShort(1);                    // methods
+        out.writeShort(0x0009);               // public static
+        out.writeShort(nameIndex);
+        out.writeShort(descriptorIndex);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length + (frames == null ? 0 : 6 + frames.length));
+        out.writeShort(maxStack);
+        out.writeShort(parameters.length + 2 * longLocals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);                    // exception table
+        if (frames == null) {
+            out.writeShort(0);
+        } else {
+            out.writeShort(1);
+            out.writeShort(frameName);
+            out.writeInt(frames.length);
+            out.write(frames);
+        }
+        out.writeShort(0);                    // class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private byte[] stackMapTable(int[] parameterTypes, int longLocals) throws IOException {
+        SortedSet<Integer> targets = new TreeSet<>();
+        for (int[] fixup : fixups) {
+            targets.add(labelOffsets.get(fixup[1]));
+        }
+        for (int label : frameLabels) {
+            targets.add(labelOffsets.get(label));
+        }
+        if (targets.isEmpty()) return null;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(targets.size());
+        int previous = -1;
+        for (int offset : targets) {
+            out.writeByte(255);               // full_frame
+            out.writeShort(offset - previous - 1);
+            out.writeShort(parameterTypes.length + longLocals);
+            for (int type : parameterTypes) {
+                out.writeByte(7);             // Object
+                out.writeShort(type);
+            }
+            for (int i = 0; i < longLocals; i++) {
+                out.writeByte(4);             // Long
+            }
+            out.writeShort(0);                // empty stack
+            previous = offset;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> { out.writeByte(1); out.writeUTF(value); });
+        }
+
+        int integer(int value) {
+            return entry("I" + value, 1, () -> { out.writeByte(3); out.writeInt(value); });
+        }
+
+        int longValue(long value) {
+            return entry("J" + value, 2, () -> { out.writeByte(5); out.writeLong(value); });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, 1, () -> { out.writeByte(7); out.writeShort(name); });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("T" + name + descriptor, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            target.write(bytes.toByteArray());
+        }
+
+        private int entry(String key, int width, Writer writer) {
+            Integer existing = entries.get(key);
+            if (existing != null) return existing;
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            int index = count;
+            count += width;
+            entries.put(key, index);
+            return index;
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package logic.program.compiler;
+
+import logic.program.CancellationToken;
+import logic.program.ExecutionContext;
+import logic.program.StopReason;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A linked program translated into a hidden class; running it invokes one static
+ * method that keeps every register in a JVM local.
+ */
+public class CompiledProgram {
+    private final MethodHandle entry;
+
+    CompiledProgram(MethodHandle entry) {
+        this.entry = entry;
+    }
+
+    /** Runs the program until it exits, or until token is cancelled or the thread interrupted. */
+    public StopReason run(ExecutionContext ctx, CancellationToken token) {
+        if (cancelled(token)) {
+            return StopReason.CANCELLED;
+        }
+        try {
+            boolean stopped = (boolean) entry.invokeExact(ctx.getRegisters(), ctx.getCounters(), token);
+            return stopped ? StopReason.CANCELLED : StopReason.COMPLETED;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Compiled program failed", t);
+        }
+    }
+
+    /** Called by the compiled code every few thousand backward jumps. */
+    public static boolean cancelled(CancellationToken token) {
+        return (token != null && token.isCancelled()) || Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,278 @@
+package logic.program.compiler;
+
+import logic.instructions.InstructionType;
+import logic.program.CancellationToken;
+import logic.program.ExecutionContext;
+import logic.program.LinkedProgram;
+import logic.program.Opcodes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Compiles a linked basic-degree program into a hidden class with a single method
+ * {@code static boolean run(long[] registers, long[] counters, CancellationToken token)},
+ * which adds the cycles and steps it used to the counters of the ExecutionContext. Registers are
+ * copied into long locals on entry, every label becomes a bytecode jump target, and the
+ * locals are written back on exit, so the JIT can keep the whole program in machine registers.
+ * Every few thousand backward jumps the token is polled; the method returns true when it
+ * stopped the run.
+ */
+public class ProgramCompiler {
+    // HotSpot refuses to JIT methods above 8000 bytes of bytecode,
+    // bigger programs run faster in the interpreter loop.
+    private static final int MAX_CODE_SIZE = 8000;
+    private static final String CLASS_NAME = "logic/program/compiler/CompiledS";
+    private static final String TOKEN = "logic/program/CancellationToken";
+    private static final String DESCRIPTOR = "([J[JL" + TOKEN + ";)Z";
+    private static final String[] PARAMETERS = { "[J", "[J", TOKEN };
+
+    // backward jumps between two polls of the token
+    private static final int POLL_INTERVAL = 4096;
+
+    private ProgramCompiler() {}
+
+    /** Returns the compiled form, or null when the program cannot be compiled. */
+    public static CompiledProgram compile(LinkedProgram program) {
+        if (!isCompilable(program)) {
+            return null;
+        }
+
+        try {
+            byte[] classFile = emit(program);
+            if (classFile == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            MethodHandle entry = lookup.findStatic(lookup.lookupClass(), "run",
+                    MethodType.methodType(boolean.class, long[].class, long[].class, CancellationToken.class));
+            return new CompiledProgram(entry);
+        } catch (Exception | LinkageError e) {
+            System.err.println("Compiling program '" + program.getName() + "' failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isCompilable(LinkedProgram program) {
+        if (program.getSlotCount() > 0x7ffd) return false;
+        for (int pc = 0; pc < program.size(); pc++) {
+            if (program.getInstruction(pc).getData().getInstructionType() != InstructionType.BASIC) return false;
+            if (program.getTarget(pc) == LinkedProgram.UNKNOWN_PC) return false;
+            switch (program.getOpcode(pc)) {
+                case Opcodes.INC, Opcodes.ADD, Opcodes.DEC, Opcodes.JNZ, Opcodes.NOP,
+                     Opcodes.ZERO_LOOP, Opcodes.TRANSFER_LOOP, Opcodes.DECREMENT_LOOP,
+                     Opcodes.COUNTED_LOOP -> { }
+                default -> { return false; }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] emit(LinkedProgram program) throws Exception {
+        int size = program.size();
+        int slots = program.getSlotCount();
+        int cycles = local(slots);
+        int iterations = local(slots + 1);
+        int steps = local(slots + 2);
+        int poll = local(slots + 3);
+        int stopped = local(slots + 4);
+        ClassWriter w = new ClassWriter(CLASS_NAME);
+
+        int exit = w.newLabel();
+        int stop = w.newLabel();
+        int[] labels = new int[size];
+        for (int pc = 0; pc < size; pc++) {
+            labels[pc] = w.newLabel();
+        }
+
+        for (int slot = 0; slot < slots; slot++) {
+            w.op(ClassWriter.ALOAD_0);
+            w.pushInt(slot);
+            w.op(ClassWriter.LALOAD);
+            w.local(ClassWriter.LSTORE, local(slot));
+        }
+        w.op(ClassWriter.LCONST_0);
+        w.local(ClassWriter.LSTORE, cycles);
+        w.op(ClassWriter.LCONST_0);
+        w.local(ClassWriter.LSTORE, iterations);
+        w.op(ClassWriter.LCONST_0);
+        w.local(ClassWriter.LSTORE, steps);
+        w.pushLong(POLL_INTERVAL);
+        w.local(ClassWriter.LSTORE, poll);
+        w.op(ClassWriter.LCONST_0);
+        w.local(ClassWriter.LSTORE, stopped);
+
+        for (int pc = 0; pc < size; pc++) {
+            w.mark(labels[pc]);
+            int v = local(program.getFirstSlot(pc));
+            int other = local(program.getSecondSlot(pc));
+            int target = program.getTarget(pc);
+            int targetLabel = 0 <= target && target < size ? labels[target] : exit;
+
+            if (program.getCycleCost(pc) > 0) {
+                w.local(ClassWriter.LLOAD, cycles);
+                w.pushLong(program.getCycleCost(pc));
+                w.op(ClassWriter.LADD);
+                w.local(ClassWriter.LSTORE, cycles);
+            }
+            w.local(ClassWriter.LLOAD, steps);
+            w.op(ClassWriter.LCONST_1);
+            w.op(ClassWriter.LADD);
+            w.local(ClassWriter.LSTORE, steps);
+
+            switch (program.getOpcode(pc)) {
+                case Opcodes.INC -> {
+                    w.local(ClassWriter.LLOAD, v);
+                    w.op(ClassWriter.LCONST_1);
+                    w.op(ClassWriter.LADD);
+                    w.local(ClassWriter.LSTORE, v);
+                }
+                case Opcodes.ADD -> {
+                    w.local(ClassWriter.LLOAD, v);
+                    w.pushLong(program.getConstant(pc));
+                    w.op(ClassWriter.LADD);
+                    w.local(ClassWriter.LSTORE, v);
+                }
+                case Opcodes.DEC -> {
+                    w.local(ClassWriter.LLOAD, v);
+                    w.op(ClassWriter.LCONST_1);
+                    w.op(ClassWriter.LSUB);
+                    w.op(ClassWriter.LCONST_0);
+                    w.invokeStatic("java/lang/Math", "max", "(JJ)J");
+                    w.local(ClassWriter.LSTORE, v);
+                }
+                case Opcodes.JNZ -> {
+                    if (0 <= target && target <= pc) {
+                        pollToken(w, poll, stop); // every endless loop goes through a backward jump
+                    }
+                    w.local(ClassWriter.LLOAD, v);
+                    w.op(ClassWriter.LCONST_0);
+                    w.op(ClassWriter.LCMP);
+                    w.jump(ClassWriter.IFNE, targetLabel);
+                }
+                case Opcodes.ZERO_LOOP, Opcodes.TRANSFER_LOOP, Opcodes.DECREMENT_LOOP, Opcodes.COUNTED_LOOP -> {
+                    // iterations = max(v, 1); v = 0
+                    w.local(ClassWriter.LLOAD, v);
+                    w.op(ClassWriter.LCONST_1);
+                    w.invokeStatic("java/lang/Math", "max", "(JJ)J");
+                    w.local(ClassWriter.LSTORE, iterations);
+                    w.op(ClassWriter.LCONST_0);
+                    w.local(ClassWriter.LSTORE, v);
+
+                    if (program.getOpcode(pc) == Opcodes.TRANSFER_LOOP) {
+                        w.local(ClassWriter.LLOAD, other);
+                        w.local(ClassWriter.LLOAD, iterations);
+                        w.op(ClassWriter.LADD);
+                        w.local(ClassWriter.LSTORE, other);
+                    } else if (program.getOpcode(pc) == Opcodes.DECREMENT_LOOP) {
+                        w.local(ClassWriter.LLOAD, other);
+                        w.local(ClassWriter.LLOAD, iterations);
+                        w.op(ClassWriter.LSUB);
+                        w.op(ClassWriter.LCONST_0);
+                        w.invokeStatic("java/lang/Math", "max", "(JJ)J");
+                        w.local(ClassWriter.LSTORE, other);
+                    } else if (program.getOpcode(pc) == Opcodes.COUNTED_LOOP) {
+                        int[] changed = program.getLoopSlots(pc);
+                        long[] deltas = program.getLoopDeltas(pc);
+                        for (int i = 0; i < changed.length; i++) {
+                            // slot = max(slot + iterations * delta, 0)
+                            w.local(ClassWriter.LLOAD, local(changed[i]));
+                            w.local(ClassWriter.LLOAD, iterations);
+                            w.pushLong(deltas[i]);
+                            w.op(ClassWriter.LMUL);
+                            w.op(ClassWriter.LADD);
+                            if (deltas[i] < 0) {
+                                w.op(ClassWriter.LCONST_0);
+                                w.invokeStatic("java/lang/Math", "max", "(JJ)J");
+                            }
+                            w.local(ClassWriter.LSTORE, local(changed[i]));
+                        }
+                    }
+
+                    // cycles += iterations * cycles of one iteration
+                    w.local(ClassWriter.LLOAD, cycles);
+                    w.local(ClassWriter.LLOAD, iterations);
+                    w.pushLong(program.getConstant(pc));
+                    w.op(ClassWriter.LMUL);
+                    w.op(ClassWriter.LADD);
+                    w.local(ClassWriter.LSTORE, cycles);
+
+                    // steps += iterations * loop length - 1, the head was counted above
+                    w.local(ClassWriter.LLOAD, steps);
+                    w.local(ClassWriter.LLOAD, iterations);
+                    w.pushLong(target - pc);
+                    w.op(ClassWriter.LMUL);
+                    w.op(ClassWriter.LADD);
+                    w.op(ClassWriter.LCONST_1);
+                    w.op(ClassWriter.LSUB);
+                    w.local(ClassWriter.LSTORE, steps);
+
+                    w.jump(ClassWriter.GOTO, targetLabel);
+                    w.frame(pc + 1 < size ? labels[pc + 1] : exit);
+                }
+                default -> { }
+            }
+            if (w.codeSize() > MAX_CODE_SIZE) {
+                return null;
+            }
+        }
+
+        w.mark(exit);
+        for (int slot = 0; slot < slots; slot++) {
+            w.op(ClassWriter.ALOAD_0);
+            w.pushInt(slot);
+            w.local(ClassWriter.LLOAD, local(slot));
+            w.op(ClassWriter.LASTORE);
+        }
+        addCounter(w, ExecutionContext.CYCLES, cycles);
+        addCounter(w, ExecutionContext.STEPS, steps);
+        w.local(ClassWriter.LLOAD, stopped);
+        w.op(ClassWriter.L2I);
+        w.op(ClassWriter.IRETURN);
+
+        w.mark(stop);
+        w.op(ClassWriter.LCONST_1);
+        w.local(ClassWriter.LSTORE, stopped);
+        w.jump(ClassWriter.GOTO, exit);
+
+        if (w.codeSize() > MAX_CODE_SIZE) {
+            return null;
+        }
+        return w.toClassFile("run", DESCRIPTOR, PARAMETERS, 6, slots + 5);
+    }
+
+    // if (--poll == 0) { poll = POLL_INTERVAL; if (CompiledProgram.cancelled(token)) goto stop; }
+    private static void pollToken(ClassWriter w, int poll, int stop) {
+        int next = w.newLabel();
+        w.local(ClassWriter.LLOAD, poll);
+        w.op(ClassWriter.LCONST_1);
+        w.op(ClassWriter.LSUB);
+        w.op(ClassWriter.DUP2);
+        w.local(ClassWriter.LSTORE, poll);
+        w.op(ClassWriter.LCONST_0);
+        w.op(ClassWriter.LCMP);
+        w.jump(ClassWriter.IFNE, next);
+        w.pushLong(POLL_INTERVAL);
+        w.local(ClassWriter.LSTORE, poll);
+        w.op(ClassWriter.ALOAD_2);
+        w.invokeStatic("logic/program/compiler/CompiledProgram", "cancelled", "(L" + TOKEN + ";)Z");
+        w.jump(ClassWriter.IFNE, stop);
+        w.mark(next);
+    }
+
+    // counters[index] += local
+    private static void addCounter(ClassWriter w, int index, int local) {
+        w.op(ClassWriter.ALOAD_1);
+        w.pushInt(index);
+        w.op(ClassWriter.DUP2);
+        w.op(ClassWriter.LALOAD);
+        w.local(ClassWriter.LLOAD, local);
+        w.op(ClassWriter.LADD);
+        w.op(ClassWriter.LASTORE);
+    }
+
+    private static int local(int slot) {
+        return PARAMETERS.length + 2 * slot;
+    }
+}
@@ -0,0 +1,73 @@
+package execute;
+
+import execute.components.ProgramRepository;
+import execute.dto.RunResult;
+import execute.dto.VariableDTO;
+import logic.program.CancellationToken;
+import logic.program.RunOptions;
+import logic.program.StopReason;
+import logic.variables.VariableType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which runs EngineImpl answers from its result cache: runs with a token or a budget
+ * the cached run fits in are, runs the budget would have stopped are not.
+ */
+public class RunCacheTest {
+    private static final long X = 100_000;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void tokenRunsHitTheCache() {
+        EngineImpl engine = load(TestPrograms.LONG_CALL);
+        RunResult first = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE.withToken(new CancellationToken()));
+        for (int run = 0; run < 2; run++) {
+            RunResult again = engine.runProgramAndRecord(0, List.of(X),
+                    RunOptions.NONE.withToken(new CancellationToken()));
+            assertEquals(first.getResult(), again.getResult());
+            assertEquals(first.getCycles(), again.getCycles());
+            assertEquals(first.getSteps(), again.getSteps());
+        }
+        assertEquals(2, engine.getCacheHits());
+        assertEquals(1, engine.getCacheMisses());
+        assertTrue(engine.getHistory().get(2).isFromCache());
+    }
+
+    @Test
+    void budgetedRunsHitOnlyWhenTheRunFits() {
+        EngineImpl engine = load(TestPrograms.LONG_CALL);
+        RunResult full = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE);
+
+        RunResult fits = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE.withMaxCycles(full.getCycles() + 1));
+        assertEquals(StopReason.COMPLETED, fits.getStopReason());
+        assertEquals(1, engine.getCacheHits());
+
+        RunResult stopped = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE.withMaxCycles(10_000));
+        assertEquals(StopReason.CYCLE_LIMIT, stopped.getStopReason());
+        assertEquals(1, engine.getCacheHits());
+        assertFalse(engine.getHistory().get(2).isFromCache());
+    }
+
+    private EngineImpl load(String xml) {
+        EngineImpl engine = new EngineImpl();
+        assertTrue(engine.loadFromXML(TestPrograms.write(dir, xml).toString()));
+        engine.loadInputs(List.of(new VariableDTO(VariableType.INPUT, 1, X)));
+        return engine;
+    }
+}
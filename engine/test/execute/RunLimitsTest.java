@@ -0,0 +1,102 @@
+package execute;
+
+import execute.components.ProgramRepository;
+import execute.dto.RunResult;
+import execute.dto.VariableDTO;
+import logic.program.CancellationToken;
+import logic.program.RunOptions;
+import logic.program.StopReason;
+import logic.variables.VariableType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs programs whose work happens inside a single QUOTE and checks that cycle and step
+ * budgets, deadlines and cancellation stop the run inside the call, close to the limit,
+ * instead of once the call returns.
+ */
+public class RunLimitsTest {
+    private static final long X = 1_000_000;
+
+    // limits are checked every 4096 steps, a few instructions of the callee at most past that
+    private static final long SLACK = 5 * 4096;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void cycleLimitInsideCall() {
+        for (boolean lazy : new boolean[] { false, true }) {
+            EngineImpl engine = load(TestPrograms.LONG_CALL, lazy);
+            int degree = lazy ? engine.maxDegree() : 0;
+            RunResult result = engine.runProgramAndRecord(degree, List.of(X), RunOptions.NONE.withMaxCycles(10_000));
+            assertEquals(StopReason.CYCLE_LIMIT, result.getStopReason(), "lazy " + lazy);
+            assertTrue(10_000 <= result.getCycles() && result.getCycles() < 10_000 + SLACK,
+                    "lazy " + lazy + ": stopped at " + result.getCycles() + " cycles");
+
+            // the stopped run is not cached, a full run still does all the work
+            RunResult full = engine.runProgramAndRecord(degree, List.of(X), RunOptions.NONE);
+            assertEquals(StopReason.COMPLETED, full.getStopReason(), "lazy " + lazy);
+            assertEquals(2 * X, full.getResult(), "lazy " + lazy);
+            assertTrue(full.getCycles() > 5 * X, "lazy " + lazy + ": " + full.getCycles() + " cycles");
+        }
+    }
+
+    @Test
+    void stepLimitInsideCall() {
+        EngineImpl engine = load(TestPrograms.LONG_CALL, false);
+        RunResult result = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE.withMaxSteps(10_000));
+        assertEquals(StopReason.STEP_LIMIT, result.getStopReason());
+        assertTrue(10_000 <= result.getSteps() && result.getSteps() < 10_000 + SLACK,
+                "stopped at " + result.getSteps() + " steps");
+    }
+
+    @Test
+    void deadlineInsideEndlessCall() {
+        EngineImpl engine = load(TestPrograms.ENDLESS_CALL, false);
+        long start = System.nanoTime();
+        RunResult result = engine.runProgramAndRecord(0, List.of(X),
+                RunOptions.NONE.withTimeout(Duration.ofMillis(50)));
+        assertEquals(StopReason.DEADLINE, result.getStopReason());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "the deadline stopped the call");
+    }
+
+    @Test
+    void cancelInsideEndlessCall() {
+        EngineImpl engine = load(TestPrograms.ENDLESS_CALL, false);
+        CancellationToken token = new CancellationToken();
+        ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor();
+        try {
+            canceller.schedule(token::cancel, 50, TimeUnit.MILLISECONDS);
+            RunResult result = engine.runProgramAndRecord(0, List.of(X), RunOptions.NONE.withToken(token));
+            assertEquals(StopReason.CANCELLED, result.getStopReason());
+            assertTrue(result.getSteps() > 1, "the call ran before it was cancelled");
+        } finally {
+            canceller.shutdownNow();
+        }
+    }
+
+    private EngineImpl load(String xml, boolean lazy) {
+        EngineImpl engine = new EngineImpl();
+        engine.setLazyExpansion(lazy);
+        assertTrue(engine.loadFromXML(TestPrograms.write(dir, xml).toString()));
+        engine.loadInputs(List.of(new VariableDTO(VariableType.INPUT, 1, X)));
+        return engine;
+    }
+}
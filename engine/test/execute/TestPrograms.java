@@ -0,0 +1,476 @@
+package execute;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * S programs shared by the engine tests, as the XML the loader reads.
+ */
+public class TestPrograms {
+
+    // functions the programs below include, declared first so they are set before them
+    private static final String PLUS2 = """
+                <S-Function name="Plus2" user-string="+">
+                  <S-Instructions>
+            """ + plusBody() + """
+                  </S-Instructions>
+                </S-Function>
+            """;
+
+    private static final String DOUBLE = """
+                <S-Function name="Double" user-string="2*">
+                  <S-Instructions>
+                    <S-Instruction type="synthetic" name="ASSIGNMENT">
+                      <S-Variable>z1</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="assignedVariable" value="x1"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="JUMP_ZERO">
+                      <S-Label>L1</S-Label>
+                      <S-Variable>z1</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="JZLabel" value="EXIT"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="INCREASE">
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="INCREASE">
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="DECREASE">
+                      <S-Variable>z1</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="GOTO_LABEL">
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="gotoLabel" value="L1"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                  </S-Instructions>
+                </S-Function>
+            """;
+
+    /** y <- x1, through labels and jumps only. */
+    public static final String BASIC = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Basic">
+              <S-Instructions>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>x1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>z1</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>z1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="EXIT"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>x1</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>z2</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>x1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="NEUTRAL">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    /** A counted loop over x1 that also counts x2 down, run in closed form. */
+    public static final String COUNTED_LOOP = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="CountedLoop">
+              <S-Instructions>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>x1</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Variable>x2</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="NEUTRAL">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>x1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    /** Every synthetic instruction but the calls. */
+    public static final String SYNTHETIC = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Synthetic">
+              <S-Instructions>
+                <S-Instruction type="synthetic" name="CONSTANT_ASSIGNMENT">
+                  <S-Variable>z3</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="constantValue" value="3"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="JUMP_EQUAL_VARIABLE">
+                  <S-Label>L2</S-Label>
+                  <S-Variable>x1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="variableName" value="z3"/>
+                    <S-Instruction-Argument name="JEVariableLabel" value="L5"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="JUMP_EQUAL_CONSTANT">
+                  <S-Variable>x2</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="constantValue" value="2"/>
+                    <S-Instruction-Argument name="JEConstantLabel" value="L5"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="ZERO_VARIABLE">
+                  <S-Variable>x2</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="GOTO_LABEL">
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="gotoLabel" value="EXIT"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="ASSIGNMENT">
+                  <S-Label>L5</S-Label>
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="assignedVariable" value="x1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    /** y <- x1 + x2, whose expansion holds the loop idioms that are fused. */
+    public static final String PLUS = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Plus">
+              <S-Instructions>
+            """ + plusBody() + """
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    /**
+     * Three rounds of y <- Plus2(y, x1) that stop early when y = Double(x2). Plus2 has
+     * the shape of an intrinsic, Double does not.
+     */
+    public static final String CALLS = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Calls">
+              <S-Instructions>
+                <S-Instruction type="synthetic" name="CONSTANT_ASSIGNMENT">
+                  <S-Variable>z1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="constantValue" value="3"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>z2</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Plus2"/>
+                    <S-Instruction-Argument name="functionArguments" value="y,x1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="ASSIGNMENT">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="assignedVariable" value="z2"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="JUMP_EQUAL_FUNCTION">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Double"/>
+                    <S-Instruction-Argument name="functionArguments" value="x2"/>
+                    <S-Instruction-Argument name="JEFunctionLabel" value="L2"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Variable>z1</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>z1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="GOTO_LABEL">
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="gotoLabel" value="EXIT"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Label>L2</S-Label>
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+              </S-Instructions>
+              <S-Functions>
+            """ + PLUS2 + DOUBLE + """
+              </S-Functions>
+            </S-Program>
+            """;
+
+    /**
+     * y <- 3 * max(x1, 1) + x2 through a labeled call of Three, which takes no inputs, and
+     * calls of Plus2 that leave out an argument.
+     */
+    public static final String CONSTANT_CALL = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="ConstantCall">
+              <S-Instructions>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>z1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Three"/>
+                    <S-Instruction-Argument name="functionArguments" value=""/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Plus2"/>
+                    <S-Instruction-Argument name="functionArguments" value="y,z1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Variable>x1</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>x1</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Variable>z2</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Plus2"/>
+                    <S-Instruction-Argument name="functionArguments" value="x2"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Plus2"/>
+                    <S-Instruction-Argument name="functionArguments" value="y,z2"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+              </S-Instructions>
+              <S-Functions>
+                <S-Function name="Three" user-string="3">
+                  <S-Instructions>
+                    <S-Instruction type="synthetic" name="CONSTANT_ASSIGNMENT">
+                      <S-Label>L1</S-Label>
+                      <S-Variable>y</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="constantValue" value="3"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                  </S-Instructions>
+                </S-Function>
+            """ + PLUS2 + """
+              </S-Functions>
+            </S-Program>
+            """;
+
+    /** A loop of basic instructions that never exits. */
+    public static final String SPIN = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Spin">
+              <S-Instructions>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="JUMP_NOT_ZERO">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="JNZLabel" value="L1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    /** y <- Double(x1), a single call that runs 5 * x1 + 3 cycles inside the callee. */
+    public static final String LONG_CALL = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="LongCall">
+              <S-Instructions>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Double"/>
+                    <S-Instruction-Argument name="functionArguments" value="x1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+              </S-Instructions>
+              <S-Functions>
+            """ + DOUBLE + """
+              </S-Functions>
+            </S-Program>
+            """;
+
+    /** y <- Spin(x1), a call that never returns. */
+    public static final String ENDLESS_CALL = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="EndlessCall">
+              <S-Instructions>
+                <S-Instruction type="synthetic" name="QUOTE">
+                  <S-Variable>y</S-Variable>
+                  <S-Instruction-Arguments>
+                    <S-Instruction-Argument name="functionName" value="Spin"/>
+                    <S-Instruction-Argument name="functionArguments" value="x1"/>
+                  </S-Instruction-Arguments>
+                </S-Instruction>
+              </S-Instructions>
+              <S-Functions>
+                <S-Function name="Spin" user-string="spin">
+                  <S-Instructions>
+                    <S-Instruction type="basic" name="INCREASE">
+                      <S-Label>L1</S-Label>
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="GOTO_LABEL">
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="gotoLabel" value="L1"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                  </S-Instructions>
+                </S-Function>
+              </S-Functions>
+            </S-Program>
+            """;
+
+    private static String plusBody() {
+        return """
+                    <S-Instruction type="synthetic" name="ASSIGNMENT">
+                      <S-Variable>y</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="assignedVariable" value="x1"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="ASSIGNMENT">
+                      <S-Variable>z1</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="assignedVariable" value="x2"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="JUMP_ZERO">
+                      <S-Label>L1</S-Label>
+                      <S-Variable>z1</S-Variable>
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="JZLabel" value="EXIT"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="INCREASE">
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="DECREASE">
+                      <S-Variable>z1</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="synthetic" name="GOTO_LABEL">
+                      <S-Instruction-Arguments>
+                        <S-Instruction-Argument name="gotoLabel" value="L1"/>
+                      </S-Instruction-Arguments>
+                    </S-Instruction>
+                """;
+    }
+
+    /**
+     * y <- blocks * x1, one copy of a counting loop per block, large enough that parallel
+     * mode expands it in chunks.
+     */
+    public static String unrolled(int blocks) {
+        StringBuilder xml = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <S-Program name="Unrolled">
+                  <S-Instructions>
+                """);
+        for (int i = 0; i < blocks; i++) {
+            // block i starts at L(2i), loops at L(2i + 1) and leaves to the next block
+            String start = i == 0 ? "" : "      <S-Label>L" + 2 * i + "</S-Label>\n";
+            xml.append("""
+                        <S-Instruction type="synthetic" name="ASSIGNMENT">
+                    %s      <S-Variable>z1</S-Variable>
+                          <S-Instruction-Arguments>
+                            <S-Instruction-Argument name="assignedVariable" value="x1"/>
+                          </S-Instruction-Arguments>
+                        </S-Instruction>
+                        <S-Instruction type="synthetic" name="JUMP_ZERO">
+                          <S-Label>L%d</S-Label>
+                          <S-Variable>z1</S-Variable>
+                          <S-Instruction-Arguments>
+                            <S-Instruction-Argument name="JZLabel" value="L%d"/>
+                          </S-Instruction-Arguments>
+                        </S-Instruction>
+                        <S-Instruction type="basic" name="INCREASE">
+                          <S-Variable>y</S-Variable>
+                        </S-Instruction>
+                        <S-Instruction type="basic" name="DECREASE">
+                          <S-Variable>z1</S-Variable>
+                        </S-Instruction>
+                        <S-Instruction type="synthetic" name="GOTO_LABEL">
+                          <S-Instruction-Arguments>
+                            <S-Instruction-Argument name="gotoLabel" value="L%d"/>
+                          </S-Instruction-Arguments>
+                        </S-Instruction>
+                    """.formatted(start, 2 * i + 1, 2 * i + 2, 2 * i + 1));
+        }
+        xml.append("""
+                    <S-Instruction type="basic" name="NEUTRAL">
+                      <S-Label>L%d</S-Label>
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                  </S-Instructions>
+                </S-Program>
+                """.formatted(2 * blocks));
+        return xml.toString();
+    }
+
+    /** Writes xml to a file in directory, named as the .xml file the loader expects. */
+    public static Path write(Path directory, String xml) {
+        try {
+            return Files.writeString(Files.createTempFile(directory, "program", ".xml"), xml);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package execute.components;
+
+import execute.TestPrograms;
+import logic.program.LazyProgram;
+import logic.program.Program;
+import logic.variables.Variable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Stores expansions in an ExpansionCache and checks that they are handed back, and that a
+ * write that fails is only logged and leaves no file behind.
+ */
+public class ExpansionCacheTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void storedExpansionsAreHandedBack() throws Exception {
+        Path cacheDir = dir.resolve("cache");
+        ExpansionCache cache = new ExpansionCache(cacheDir);
+        Program program = XmlLoader.parse(TestPrograms.write(dir, TestPrograms.CALLS).toString(), new HashMap<>());
+        ProgramManager programs = new ProgramManager(new ConcurrentHashMap<>());
+        programs.setExpansionCache(cache);
+        programs.loadNewProgram(program);
+        programs.getProgram(programs.maxDegree());
+
+        Map<String, Variable> vars = new HashMap<>();
+        List<Program> stored = cache.get(program, false, vars);
+        assertEquals(programs.maxDegree(), stored.size());
+        for (int degree = 1; degree <= programs.maxDegree(); degree++) {
+            assertEquals(programs.getProgram(degree).getInstructions().size(),
+                    stored.get(degree - 1).getInstructions().size(), "degree " + degree);
+        }
+    }
+
+    @Test
+    void failedWriteIsOnlyLogged() throws Exception {
+        ExpansionCache cache = new ExpansionCache(dir);
+        Program program = XmlLoader.parse(TestPrograms.write(dir, TestPrograms.BASIC).toString(), new HashMap<>());
+        Program broken = new LazyProgram("Broken", () -> {
+            throw new IllegalStateException("broken degree");
+        });
+
+        cache.put(List.of(), false);
+        cache.put(List.of(program, broken), false);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(), files.filter(f -> !f.toString().endsWith(".xml")).toList());
+        }
+    }
+}
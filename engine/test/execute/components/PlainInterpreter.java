@@ -0,0 +1,137 @@
+package execute.components;
+
+import logic.instructions.Instruction;
+import logic.instructions.api.synthetic.JumpEqualFunction;
+import logic.instructions.api.synthetic.Quote;
+import logic.labels.FixedLabel;
+import logic.labels.Label;
+import logic.program.Program;
+import logic.variables.Variable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reference the tests hold the engine to: runs a program by executing its instructions
+ * one at a time on their own variables. QUOTE and JUMP_EQUAL_FUNCTION run the function from
+ * ProgramRepository the same way, with fresh variables, and add its cycles and steps to
+ * the caller's, as a native call does.
+ */
+class PlainInterpreter {
+    private long cycles;
+    private long steps;
+
+    /** Runs program with x(i+1) set to inputs[i] and every other variable zero, and returns y, the cycles and the steps. */
+    static long[] run(Program program, long... inputs) {
+        PlainInterpreter interpreter = new PlainInterpreter();
+        long y = interpreter.call(program, inputs);
+        return new long[] { y, interpreter.cycles, interpreter.steps };
+    }
+
+    private long call(Program program, long[] inputs) {
+        // a program can hold several objects of one variable, they are kept equal
+        Map<String, List<Variable>> variables = new HashMap<>();
+        for (Instruction instr : program.getInstructions()) {
+            for (Variable v : instr.getVars()) {
+                List<Variable> same = variables.computeIfAbsent(v.getName(), k -> new ArrayList<>());
+                if (same.stream().noneMatch(known -> known == v)) {
+                    same.add(v);
+                }
+            }
+        }
+        for (String name : variables.keySet()) {
+            set(variables, name, valueOf(name, inputs));
+        }
+
+        List<Instruction> code = program.getInstructions();
+        int pc = 0;
+        while (0 <= pc && pc < code.size()) {
+            Instruction instr = code.get(pc);
+            cycles += instr.getCycles();
+            steps++;
+
+            Label next;
+            if (instr instanceof Quote quote) {
+                long value = this.call(quote.getFunctionName(), quote.getFunctionArguments(), variables, inputs);
+                set(variables, quote.getTarget().getName(), value);
+                next = FixedLabel.EMPTY;
+            } else if (instr instanceof JumpEqualFunction jef) {
+                long value = this.call(jef.getFunctionName(), jef.getFunctionArguments(), variables, inputs);
+                next = jef.getV().getValue() == value ? jef.getJumpLabel() : FixedLabel.EMPTY;
+            } else {
+                next = instr.execute();
+                for (Variable v : instr.getVars()) {
+                    set(variables, v.getName(), v.getValue());
+                }
+            }
+
+            if (next == FixedLabel.EMPTY) {
+                pc++;
+            } else if (next == FixedLabel.EXIT) {
+                break;
+            } else {
+                pc = program.indexOf(next);
+            }
+        }
+        List<Variable> y = variables.get("y");
+        return y == null ? 0 : y.get(0).getValue();
+    }
+
+    /** Calls function with arguments such as {@code x1,(Plus,x2,z1)} read in the caller. */
+    private long call(String function, String arguments, Map<String, List<Variable>> caller, long[] callerInputs) {
+        Program program = ProgramRepository.get(function);
+        if (program == null) {
+            throw new IllegalStateException("No function " + function);
+        }
+        List<String> parts = split(arguments);
+        long[] values = new long[parts.size()];
+        for (int i = 0; i < values.length; i++) {
+            String part = parts.get(i);
+            if (part.startsWith("(")) {
+                String inner = part.substring(1, part.length() - 1);
+                int comma = inner.indexOf(',');
+                values[i] = comma < 0
+                        ? this.call(inner.trim(), "", caller, callerInputs)
+                        : this.call(inner.substring(0, comma).trim(), inner.substring(comma + 1), caller, callerInputs);
+            } else {
+                List<Variable> same = caller.get(part);
+                values[i] = same != null ? same.get(0).getValue() : valueOf(part, callerInputs);
+            }
+        }
+        return this.call(program, values);
+    }
+
+    private static List<String> split(String arguments) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == ',' && depth == 0) {
+                parts.add(arguments.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(arguments.substring(start).trim());
+        parts.removeIf(String::isEmpty);
+        return parts;
+    }
+
+    private static long valueOf(String name, long[] inputs) {
+        if (name.startsWith("x")) {
+            int index = Integer.parseInt(name.substring(1)) - 1;
+            return index < inputs.length ? inputs[index] : 0;
+        }
+        return 0;
+    }
+
+    private static void set(Map<String, List<Variable>> variables, String name, long value) {
+        for (Variable v : variables.getOrDefault(name, List.of())) {
+            v.setValue(value);
+        }
+    }
+}
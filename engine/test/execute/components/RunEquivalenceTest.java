@@ -0,0 +1,144 @@
+package execute.components;
+
+import execute.TestPrograms;
+import logic.program.CancellationToken;
+import logic.program.ExecutionContext;
+import logic.program.LinkedProgram;
+import logic.program.Program;
+import logic.program.RunOptions;
+import logic.program.StopReason;
+import logic.variables.Var;
+import logic.variables.Variable;
+import logic.variables.VariableType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs programs at every degree and in every expansion mode, through the interpreter and
+ * the compiled tier, and checks y, cycles and steps against PlainInterpreter running the
+ * same degree.
+ */
+public class RunEquivalenceTest {
+    private static final long[][] INPUTS = { {0, 0}, {1, 0}, {0, 1}, {2, 1}, {3, 2}, {2, 3}, {5, 5}, {9, 4} };
+
+    // runs of a linked program after which it runs compiled
+    private static final int COMPILED_AFTER = 3;
+
+    private enum Mode { INLINE, LAZY, PARALLEL }
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void basicJumps() throws Exception {
+        assertSameAsPlain(TestPrograms.BASIC);
+    }
+
+    @Test
+    void countedLoop() throws Exception {
+        assertSameAsPlain(TestPrograms.COUNTED_LOOP);
+    }
+
+    @Test
+    void syntheticInstructions() throws Exception {
+        assertSameAsPlain(TestPrograms.SYNTHETIC);
+    }
+
+    @Test
+    void fusedIdioms() throws Exception {
+        assertSameAsPlain(TestPrograms.PLUS);
+    }
+
+    @Test
+    void functionCalls() throws Exception {
+        assertSameAsPlain(TestPrograms.CALLS);
+    }
+
+    @Test
+    void callsWithoutArguments() throws Exception {
+        assertSameAsPlain(TestPrograms.CONSTANT_CALL);
+    }
+
+    @Test
+    void chunkedExpansion() throws Exception {
+        assertSameAsPlain(TestPrograms.unrolled(300));
+    }
+
+    private void assertSameAsPlain(String xml) throws Exception {
+        Path file = TestPrograms.write(dir, xml);
+        for (Mode mode : Mode.values()) {
+            Loaded loaded = new Loaded(file, mode);
+            for (int degree = 0; degree <= loaded.programs.maxDegree(); degree++) {
+                Program program = loaded.programs.getProgram(degree);
+                LinkedProgram linked = loaded.programs.getLinkedProgram(degree);
+                for (long[] inputs : INPUTS) {
+                    String where = mode + " degree " + degree + " inputs " + inputs[0] + "," + inputs[1];
+                    long[] plain = PlainInterpreter.run(program, inputs);
+
+                    ExecutionContext interpreted = newContext(linked, inputs);
+                    assertEquals(StopReason.COMPLETED, linked.interpret(interpreted, RunOptions.NONE), where);
+                    assertSame(plain, interpreted, where);
+
+                    // the later runs go to the compiled tier, with or without a token
+                    for (int run = 0; run <= COMPILED_AFTER; run++) {
+                        ExecutionContext ctx = newContext(linked, inputs);
+                        RunOptions options = run % 2 == 0
+                                ? RunOptions.NONE
+                                : RunOptions.NONE.withToken(new CancellationToken());
+                        assertEquals(StopReason.COMPLETED, linked.run(ctx, options), where + " run " + run);
+                        assertSame(plain, ctx, where + " run " + run);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertSame(long[] plain, ExecutionContext ctx, String where) {
+        assertEquals(plain[0], ctx.get(LinkedProgram.OUTPUT_SLOT), where + ": y");
+        assertEquals(plain[1], ctx.getCycles(), where + ": cycles");
+        assertEquals(plain[2], ctx.getSteps(), where + ": steps");
+    }
+
+    private static ExecutionContext newContext(LinkedProgram program, long[] inputs) {
+        ExecutionContext ctx = program.newContext();
+        for (int i = 0; i < inputs.length; i++) {
+            int slot = program.slotOf("x" + (i + 1));
+            if (slot >= 0) {
+                ctx.set(slot, inputs[i]);
+            }
+        }
+        return ctx;
+    }
+
+    /** A program parsed and handed to its own ProgramManager, as EngineImpl loads it. */
+    private static class Loaded {
+        final Map<String, Variable> temps = new ConcurrentHashMap<>();
+        final ProgramManager programs = new ProgramManager(temps);
+
+        Loaded(Path file, Mode mode) throws Exception {
+            Map<String, Variable> vars = new HashMap<>();
+            Program program = XmlLoader.parse(file.toString(), vars);
+            vars.forEach((name, v) -> {
+                if (((Var) v).getType() == VariableType.TEMP) {
+                    temps.put(name, v);
+                }
+            });
+            programs.setLazyCalls(mode == Mode.LAZY);
+            programs.setParallelExpansion(mode == Mode.PARALLEL);
+            programs.loadNewProgram(program);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package execute.components;
+
+import execute.TestPrograms;
+import logic.instructions.Instruction;
+import logic.program.Program;
+import logic.variables.Var;
+import logic.variables.Variable;
+import logic.variables.VariableType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Writes a program with every degree it expands to and the functions it calls to a .semu
+ * file, reads it back with an empty ProgramRepository, and checks that each degree lists
+ * the same instructions, with the same parents, and runs to the same y, cycles and steps.
+ */
+public class SemuRoundTripTest {
+    private static final long[][] INPUTS = { {0, 0}, {1, 0}, {2, 1}, {3, 2}, {2, 3}, {9, 4} };
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void syntheticInstructions() throws Exception {
+        assertRoundTrip(TestPrograms.SYNTHETIC, false);
+    }
+
+    @Test
+    void functionCalls() throws Exception {
+        assertRoundTrip(TestPrograms.CALLS, false);
+    }
+
+    @Test
+    void functionCallsKeptAsStubs() throws Exception {
+        assertRoundTrip(TestPrograms.CALLS, true);
+    }
+
+    @Test
+    void labeledCallWithoutArguments() throws Exception {
+        assertRoundTrip(TestPrograms.CONSTANT_CALL, false);
+    }
+
+    private void assertRoundTrip(String xml, boolean lazyCalls) throws Exception {
+        ProgramManager written = load(XmlLoader.parse(TestPrograms.write(dir, xml).toString(), new HashMap<>()),
+                new HashMap<>(), lazyCalls, List.of());
+        List<Program> degrees = new ArrayList<>();
+        for (int degree = 0; degree <= written.maxDegree(); degree++) {
+            Program program = written.getProgram(degree);
+            for (Instruction instr : program.getInstructions()) {
+                for (Variable v : instr.getVars()) {
+                    assertNotNull(v.getName(), "degree " + degree + ": " + instr.print());
+                }
+            }
+            degrees.add(program);
+        }
+        Map<String, List<String>> functions = new HashMap<>();
+        for (String name : List.of("Plus2", "Double", "Three")) {
+            Program function = ProgramRepository.get(name);
+            if (function != null) {
+                functions.put(name, listing(function));
+            }
+        }
+        String file = dir.resolve("program.semu").toString();
+        SemuWriter.write(file, degrees, lazyCalls);
+
+        ProgramRepository.clear();
+        Map<String, Variable> vars = new HashMap<>();
+        SemuReader reader = SemuReader.open(file, vars);
+        assertEquals(lazyCalls, reader.isLazyCalls());
+        assertEquals(degrees.size() - 1, reader.getExpansions().size());
+        functions.forEach((name, instructions) -> {
+            Program function = ProgramRepository.get(name);
+            assertNotNull(function, name + " is stored");
+            assertEquals(instructions, listing(function), name);
+        });
+
+        ProgramManager read = load(reader.getProgram(), vars, lazyCalls, reader.getExpansions());
+        for (int degree = 0; degree < degrees.size(); degree++) {
+            Program before = degrees.get(degree);
+            Program after = read.getProgram(degree);
+            assertEquals(listing(before), listing(after), "degree " + degree);
+            for (long[] inputs : INPUTS) {
+                assertArrayEquals(PlainInterpreter.run(before, inputs), PlainInterpreter.run(after, inputs),
+                        "degree " + degree + " inputs " + inputs[0] + "," + inputs[1]);
+            }
+        }
+    }
+
+    private static ProgramManager load(Program program, Map<String, Variable> vars, boolean lazyCalls,
+                                       List<Program> expansions) {
+        Map<String, Variable> temps = new ConcurrentHashMap<>();
+        vars.forEach((name, v) -> {
+            if (((Var) v).getType() == VariableType.TEMP) {
+                temps.put(name, v);
+            }
+        });
+        ProgramManager programs = new ProgramManager(temps);
+        programs.setLazyCalls(lazyCalls);
+        programs.loadNewProgram(program, expansions);
+        return programs;
+    }
+
+    /** Each instruction as printed, followed by the chain of parents it was expanded from. */
+    private static List<String> listing(Program program) {
+        List<String> lines = new ArrayList<>();
+        for (Instruction instr : program.getInstructions()) {
+            StringBuilder line = new StringBuilder(instr.print());
+            for (Instruction parent = instr.getParent(); parent != null; parent = parent.getParent()) {
+                line.append(" <<< ").append(parent.print());
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,102 @@
+package execute.components;
+
+import execute.EngineImpl;
+import execute.TestPrograms;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a label defined twice, in the program or in one of its functions, fails the
+ * load and names the place it is defined again, and that a load without a listener or a
+ * token goes through.
+ */
+public class XmlLoaderTest {
+    private static final String TWICE_IN_PROGRAM = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="Twice">
+              <S-Instructions>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+                <S-Instruction type="basic" name="DECREASE">
+                  <S-Label>L1</S-Label>
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+              </S-Instructions>
+            </S-Program>
+            """;
+
+    private static final String TWICE_IN_FUNCTION = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <S-Program name="TwiceInFunction">
+              <S-Instructions>
+                <S-Instruction type="basic" name="INCREASE">
+                  <S-Variable>y</S-Variable>
+                </S-Instruction>
+              </S-Instructions>
+              <S-Functions>
+                <S-Function name="Twice" user-string="twice">
+                  <S-Instructions>
+                    <S-Instruction type="basic" name="INCREASE">
+                      <S-Label>L2</S-Label>
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                    <S-Instruction type="basic" name="NEUTRAL">
+                      <S-Label>L2</S-Label>
+                      <S-Variable>y</S-Variable>
+                    </S-Instruction>
+                  </S-Instructions>
+                </S-Function>
+              </S-Functions>
+            </S-Program>
+            """;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void labelDefinedTwiceInProgram() {
+        String message = assertThrows(IllegalStateException.class,
+                () -> XmlLoader.parse(TestPrograms.write(dir, TWICE_IN_PROGRAM).toString(), new HashMap<>()))
+                .getMessage();
+        assertTrue(message.contains("L1") && message.contains("line 8,"), message);
+    }
+
+    @Test
+    void labelDefinedTwiceInFunction() {
+        String message = assertThrows(IllegalStateException.class,
+                () -> XmlLoader.parse(TestPrograms.write(dir, TWICE_IN_FUNCTION).toString(), new HashMap<>()))
+                .getMessage();
+        assertTrue(message.contains("L2") && message.contains("line 15,"), message);
+        assertNull(ProgramRepository.get("Twice"));
+    }
+
+    @Test
+    void engineRefusesTheFile() {
+        EngineImpl engine = new EngineImpl();
+        assertFalse(engine.loadFromXML(TestPrograms.write(dir, TWICE_IN_PROGRAM).toString()));
+        assertFalse(engine.isLoaded());
+    }
+
+    @Test
+    void loadWithoutListenerOrToken() {
+        EngineImpl engine = new EngineImpl();
+        assertTrue(engine.loadFromXML(TestPrograms.write(dir, TestPrograms.CALLS).toString(), null, null));
+        assertTrue(engine.isLoaded());
+    }
+}
@@ -0,0 +1,259 @@
+package logic.program;
+
+import execute.TestPrograms;
+import execute.components.ProgramRepository;
+import execute.components.XmlLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pins the body each intrinsic is recognized by, and checks that a matched intrinsic
+ * answers larger inputs the way the interpreter does.
+ */
+public class IntrinsicsTest {
+    private static final String ID = """
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>y</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x1"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            """;
+
+    private static final String SUCCESSOR = ID + """
+            <S-Instruction type="basic" name="INCREASE">
+              <S-Variable>y</S-Variable>
+            </S-Instruction>
+            """;
+
+    // y <- x1; z1 <- x2; then y moves once per count of z1, up for Plus and down for Minus
+    private static final String SUM = ID + """
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>z1</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x2"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Label>L1</S-Label>
+              <S-Variable>z1</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="EXIT"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="basic" name="%s">
+              <S-Variable>y</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="basic" name="DECREASE">
+              <S-Variable>z1</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="GOTO_LABEL">
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="gotoLabel" value="L1"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            """;
+
+    private static final String CONSTANT = """
+            <S-Instruction type="synthetic" name="CONSTANT_ASSIGNMENT">
+              <S-Variable>y</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="constantValue" value="7"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            """;
+
+    private static final String MULTIPLY = """
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>z5</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x2"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Label>L7</S-Label>
+              <S-Variable>z5</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="EXIT"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>z3</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x1"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Label>L2</S-Label>
+              <S-Variable>z3</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="L4"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="basic" name="INCREASE">
+              <S-Variable>y</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="basic" name="DECREASE">
+              <S-Variable>z3</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="GOTO_LABEL">
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="gotoLabel" value="L2"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="basic" name="DECREASE">
+              <S-Label>L4</S-Label>
+              <S-Variable>z5</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="GOTO_LABEL">
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="gotoLabel" value="L7"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            """;
+
+    private static final String EQUAL = """
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>z1</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x1"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="ASSIGNMENT">
+              <S-Variable>z2</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="assignedVariable" value="x2"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Label>L1</S-Label>
+              <S-Variable>z1</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="L2"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Variable>z2</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="EXIT"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="basic" name="DECREASE">
+              <S-Variable>z1</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="basic" name="DECREASE">
+              <S-Variable>z2</S-Variable>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="GOTO_LABEL">
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="gotoLabel" value="L1"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="JUMP_ZERO">
+              <S-Label>L2</S-Label>
+              <S-Variable>z2</S-Variable>
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="JZLabel" value="L3"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="synthetic" name="GOTO_LABEL">
+              <S-Instruction-Arguments>
+                <S-Instruction-Argument name="gotoLabel" value="EXIT"/>
+              </S-Instruction-Arguments>
+            </S-Instruction>
+            <S-Instruction type="basic" name="INCREASE">
+              <S-Label>L3</S-Label>
+              <S-Variable>y</S-Variable>
+            </S-Instruction>
+            """;
+
+    // Successor with one increase too many: close to a shape, but not one
+    private static final String PLUS_TWO = SUCCESSOR + """
+            <S-Instruction type="basic" name="INCREASE">
+              <S-Variable>y</S-Variable>
+            </S-Instruction>
+            """;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void eachShapeIsRecognized() throws Exception {
+        assertEquals("Id", match(ID).getName());
+        assertEquals("Successor", match(SUCCESSOR).getName());
+        assertEquals("Plus", match(SUM.formatted("INCREASE")).getName());
+        assertEquals("Minus", match(SUM.formatted("DECREASE")).getName());
+        assertEquals("Constant", match(CONSTANT).getName());
+        assertEquals("Multiply", match(MULTIPLY).getName());
+        assertEquals("Equal", match(EQUAL).getName());
+    }
+
+    @Test
+    void otherBodiesAreNot() throws Exception {
+        assertNull(match(PLUS_TWO));
+    }
+
+    @Test
+    void constantIsTheOneInTheBody() throws Exception {
+        ExecutionContext frame = new ExecutionContext(1);
+        match(CONSTANT).apply(new long[0], frame);
+        assertEquals(7, frame.get(LinkedProgram.OUTPUT_SLOT));
+        assertEquals(2, frame.getCycles());
+    }
+
+    @Test
+    void largeInputsMatchTheInterpreter() throws Exception {
+        assertAgrees(MULTIPLY, 300, 200);
+        assertAgrees(EQUAL, 250, 250);
+        assertAgrees(EQUAL, 250, 249);
+        assertAgrees(EQUAL, 249, 250);
+    }
+
+    private void assertAgrees(String body, long... args) throws Exception {
+        Program program = parse(body);
+        LinkedProgram linked = LinkedProgram.of(program);
+        Intrinsic intrinsic = Intrinsics.match(program, linked);
+        assertNotNull(intrinsic);
+
+        ExecutionContext run = linked.newContext();
+        for (int i = 0; i < args.length; i++) {
+            run.set(linked.slotOf("x" + (i + 1)), args[i]);
+        }
+        assertEquals(StopReason.COMPLETED, linked.interpret(run, RunOptions.NONE));
+        ExecutionContext closed = linked.newContext();
+        intrinsic.apply(args, closed);
+        assertEquals(run.get(LinkedProgram.OUTPUT_SLOT), closed.get(LinkedProgram.OUTPUT_SLOT));
+        assertEquals(run.getCycles(), closed.getCycles());
+        assertEquals(run.getSteps(), closed.getSteps());
+    }
+
+    private Intrinsic match(String body) throws Exception {
+        Program program = parse(body);
+        return Intrinsics.match(program, LinkedProgram.of(program));
+    }
+
+    private Program parse(String body) throws Exception {
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <S-Program name="Body">
+                  <S-Instructions>
+                """ + body + """
+                  </S-Instructions>
+                </S-Program>
+                """;
+        return XmlLoader.parse(TestPrograms.write(dir, xml).toString(), new HashMap<>());
+    }
+}
@@ -0,0 +1,72 @@
+package logic.program.compiler;
+
+import execute.TestPrograms;
+import execute.components.ProgramRepository;
+import execute.components.XmlLoader;
+import logic.program.CancellationToken;
+import logic.program.ExecutionContext;
+import logic.program.LinkedProgram;
+import logic.program.StopReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that compiled programs stop when their token is cancelled, so runs from the UI,
+ * which always carry one, can use the compiled tier.
+ */
+public class ProgramCompilerTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clearFunctions() {
+        ProgramRepository.clear();
+    }
+
+    @Test
+    void cancelStopsCompiledLoop() throws Exception {
+        CompiledProgram compiled = compile(TestPrograms.SPIN);
+        ExecutionContext ctx = link(TestPrograms.SPIN).newContext();
+        CancellationToken token = new CancellationToken();
+        ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor();
+        try {
+            canceller.schedule(token::cancel, 50, TimeUnit.MILLISECONDS);
+            assertEquals(StopReason.CANCELLED, compiled.run(ctx, token));
+        } finally {
+            canceller.shutdownNow();
+        }
+        assertTrue(ctx.getSteps() > 0, "the loop ran before it was cancelled");
+        assertEquals(ctx.getSteps() / 2, ctx.get(LinkedProgram.OUTPUT_SLOT));
+    }
+
+    @Test
+    void cancelledTokenRunsNothing() throws Exception {
+        CompiledProgram compiled = compile(TestPrograms.SPIN);
+        ExecutionContext ctx = link(TestPrograms.SPIN).newContext();
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        assertEquals(StopReason.CANCELLED, compiled.run(ctx, token));
+        assertEquals(0, ctx.getSteps());
+    }
+
+    private CompiledProgram compile(String xml) throws Exception {
+        CompiledProgram compiled = ProgramCompiler.compile(link(xml));
+        assertNotNull(compiled);
+        return compiled;
+    }
+
+    private LinkedProgram link(String xml) throws Exception {
+        return LinkedProgram.of(XmlLoader.parse(TestPrograms.write(dir, xml).toString(), new HashMap<>()));
+    }
+}
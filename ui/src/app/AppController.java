@@ -74,17 +74,29 @@ public class AppController {
         }
 
         if (headerPaneController != null) {
+            headerPaneController.setEngine(engine);
             headerPaneController.setProgramTabController(programTablePaneController);
 
+            // the header has already loaded the file into the shared engine
             headerPaneController.setOnFileLoaded(filePath -> {
                 if (programTablePaneController != null) {
-                    programTablePaneController.loadProgram(filePath);
+                    programTablePaneController.showLoadedProgram();
                 }
                 if (runMenuController != null) {
                     runMenuController.loadInputVariables();
                 }
             });
         }
+
+        // runs and loads use the engine on their own threads, keep the FX thread off it until they end
+        if (runMenuController != null && headerPaneController != null) {
+            headerPaneController.runningProperty().bind(runMenuController.runningProperty());
+            runMenuController.loadingProperty().bind(headerPaneController.loadingProperty());
+            if (programTablePaneController != null) {
+                programTablePaneController.busyProperty().bind(
+                        runMenuController.runningProperty().or(headerPaneController.loadingProperty()));
+            }
+        }
     }
 
     // Method to handle degree changes (if you have degree selection functionality)
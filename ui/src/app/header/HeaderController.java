@@ -2,7 +2,10 @@ package app.header;
 
 import app.programTable.ProgramTableController;
 import execute.EngineImpl;
+import execute.components.LoadListener;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -11,12 +14,15 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import logic.program.CancellationToken;
 
 import java.io.File;
 import java.util.function.Consumer;
 
 public class HeaderController {
 
+    @FXML private Button loadFileButton;
+    @FXML private Button expandButton;
     @FXML private Label filePathLabel;
     @FXML private ProgressBar progressBar;
     @FXML private MenuButton themeMenuButton;
@@ -24,6 +30,17 @@ public class HeaderController {
 
     private Consumer<String> onFileLoaded;
     private ProgramTableController programTabController;
+    private EngineImpl engine;
+    private CancellationToken loadToken; // set while a file loads
+    private final BooleanProperty running = new SimpleBooleanProperty(false); // a program runs on the engine
+    private final BooleanProperty loading = new SimpleBooleanProperty(false); // a file loads into the engine
+
+    @FXML
+    public void initialize() {
+        // loading or expanding while a run uses the engine would change it under the run
+        loadFileButton.disableProperty().bind(running);
+        expandButton.disableProperty().bind(running.or(loading));
+    }
 
     // Light mode
     @FXML
@@ -47,6 +64,12 @@ public class HeaderController {
 
     @FXML
     private void loadFileButtonAction() {
+        // while a file loads the button cancels it
+        if (loadToken != null) {
+            loadToken.cancel();
+            return;
+        }
+
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Open XML File");
         fileChooser.getExtensionFilters().add(
@@ -56,34 +79,47 @@ public class HeaderController {
         File selectedFile = fileChooser.showOpenDialog(themeMenuButton.getScene().getWindow());
 
         if (selectedFile != null) {
-            simulateFileLoading(selectedFile);
+            loadFile(selectedFile);
         } else {
             filePathLabel.setText("No file selected");
         }
     }
 
-    private void simulateFileLoading(File file) {
+    /**
+     * Loads file into the shared engine on a background thread. The parse fills the first
+     * half of the progress bar by bytes read and the expansions ahead of time the second.
+     */
+    private void loadFile(File file) {
+        if (engine == null) return;
+
+        CancellationToken token = new CancellationToken();
+        loadToken = token;
+        loading.set(true);
         Task<Boolean> loadTask = new Task<>() {
             @Override
             protected Boolean call() {
-                int steps = 50;
-                for (int i = 1; i <= steps; i++) {
-                    try {
-                        Thread.sleep(30);
-                    } catch (InterruptedException ignored) {}
-                    updateProgress(i, steps);
-                }
-
-                EngineImpl engine = new EngineImpl(); // Or use shared instance
-                return engine.loadFromXML(file.getAbsolutePath());
+                return engine.loadFromXML(file.getAbsolutePath(), new LoadListener() {
+                    @Override
+                    public void parsed(long bytesRead, long totalBytes, int instructions) {
+                        updateProgress(0.5 * bytesRead / Math.max(totalBytes, 1), 1.0);
+                        updateMessage("Reading... " + instructions + " instructions");
+                    }
+
+                    @Override
+                    public void expanded(int degree, int maxDegree) {
+                        updateProgress(0.5 + 0.5 * degree / maxDegree, 1.0);
+                        updateMessage("Expanding... degree " + degree + " of " + maxDegree);
+                    }
+                }, token);
             }
         };
 
         progressBar.progressProperty().bind(loadTask.progressProperty());
+        filePathLabel.textProperty().bind(loadTask.messageProperty());
+        loadFileButton.setText("cancel");
 
         loadTask.setOnSucceeded(e -> {
-            progressBar.progressProperty().unbind();
-            progressBar.setProgress(0);
+            finishLoading();
 
             boolean success = loadTask.getValue();
             if (success) {
@@ -91,6 +127,8 @@ public class HeaderController {
                 if (onFileLoaded != null) {
                     onFileLoaded.accept(file.getAbsolutePath());
                 }
+            } else if (token.isCancelled()) {
+                filePathLabel.setText("Loading cancelled");
             } else {
                 showAlert(Alert.AlertType.ERROR,
                         "File Load Error",
@@ -101,8 +139,7 @@ public class HeaderController {
         });
 
         loadTask.setOnFailed(e -> {
-            progressBar.progressProperty().unbind();
-            progressBar.setProgress(0);
+            finishLoading();
 
             Throwable ex = loadTask.getException();
             showAlert(Alert.AlertType.ERROR,
@@ -112,12 +149,19 @@ public class HeaderController {
             filePathLabel.setText("Error: failed to load file");
         });
 
-        Thread thread = new Thread(loadTask);
+        Thread thread = new Thread(loadTask, "program-load");
         thread.setDaemon(true);
         thread.start();
     }
 
-
+    private void finishLoading() {
+        loadToken = null;
+        loading.set(false);
+        loadFileButton.setText("load file");
+        filePathLabel.textProperty().unbind();
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(0);
+    }
 
     @FXML
     private void expandProgramAction() {
@@ -157,6 +201,19 @@ public class HeaderController {
         alert.showAndWait();
     }
 
+    public void setEngine(EngineImpl engine) {
+        this.engine = engine;
+    }
+
+    public BooleanProperty runningProperty() {
+        return running;
+    }
+
+    /** True while a file loads on its own thread, when the engine must not be used. */
+    public BooleanProperty loadingProperty() {
+        return loading;
+    }
+
     public void setOnFileLoaded(Consumer<String> callback) {
         this.onFileLoaded = callback;
     }
@@ -2,6 +2,7 @@ package app.historyTable;
 
 import execute.components.RunRecord;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -18,7 +19,7 @@ public class HistoryTableController {
     @FXML private TableColumn<RunRecord, Integer> columnNumber;
     @FXML private TableColumn<RunRecord, Integer> columnDegree;
     @FXML private TableColumn<RunRecord, String> columnInpust;
-    @FXML private TableColumn<RunRecord, Integer> columnCycles;
+    @FXML private TableColumn<RunRecord, Long> columnCycles;
     @FXML private TableColumn<RunRecord, String> columnOutput;
 
     private final ObservableList<RunRecord> runRecords = FXCollections.observableArrayList();
@@ -36,7 +37,7 @@ public class HistoryTableController {
             return new SimpleStringProperty(inputs);
         });
         columnOutput.setCellValueFactory(c -> new SimpleStringProperty(String.valueOf(c.getValue().getResultY())));
-        columnCycles.setCellValueFactory(c -> new SimpleIntegerProperty(c.getValue().getCycles()).asObject());
+        columnCycles.setCellValueFactory(c -> new SimpleLongProperty(c.getValue().getCycles()).asObject());
     }
 
     public void showHistory(List<RunRecord> history) {
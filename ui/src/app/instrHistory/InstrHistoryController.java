@@ -41,7 +41,7 @@ public class InstrHistoryController {
         });
         colCycles.setCellValueFactory(cell -> {
             if (cell.getValue().getData() != null) {
-                return new SimpleIntegerProperty(cell.getValue().getData().getCycles()).asObject();
+                return new SimpleIntegerProperty(cell.getValue().getCycles()).asObject();
             }
             return new SimpleIntegerProperty(0).asObject();
         });
@@ -5,6 +5,8 @@ import execute.dto.InstructionDTO;
 import execute.dto.LabelDTO;
 import execute.dto.VariableDTO;
 import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -43,12 +45,16 @@ public class ProgramTableController {
 
     private String highlightedVar = null;
     private int currentDegree = 0;
+    private boolean showRepeatedExpanded = false;
+    private final BooleanProperty busy = new SimpleBooleanProperty(false); // the engine is in use off the FX thread
 
     private final PseudoClass HIGHLIGHT = PseudoClass.getPseudoClass("highlight");
 
     @FXML
     public void initialize() {
         programTable.setItems(instructionList);
+        // selecting a row or refreshing the table reads the engine
+        programTable.disableProperty().bind(busy);
 
         setupTableRowFactory();
 
@@ -69,7 +75,7 @@ public class ProgramTableController {
         colCycles.setCellValueFactory(cellData -> {
             InstructionDTO instr = cellData.getValue();
             if (instr != null && instr.getData() != null) {
-                return new SimpleIntegerProperty(instr.getData().getCycles()).asObject();
+                return new SimpleIntegerProperty(instr.getCycles()).asObject();
             }
             return new SimpleIntegerProperty(0).asObject();
         });
@@ -91,6 +97,14 @@ public class ProgramTableController {
             return new SimpleStringProperty("");
         });
 
+        // Repeated increases are one line unless the user asks to see each one
+        CheckMenuItem expandRepeated = new CheckMenuItem("Show repeated increases expanded");
+        expandRepeated.selectedProperty().addListener((obs, oldValue, newValue) -> {
+            showRepeatedExpanded = newValue;
+            refreshTable();
+        });
+        programTable.setContextMenu(new ContextMenu(expandRepeated));
+
         // Listener for showing history
         programTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
             if (newSelection != null && instrHistoryController != null && engine != null) {
@@ -142,6 +156,10 @@ public class ProgramTableController {
 
     }
 
+    public BooleanProperty busyProperty() {
+        return busy;
+    }
+
     public void setEngine(EngineImpl engine) {
         this.engine = engine;
         refreshTable();
@@ -158,20 +176,29 @@ public class ProgramTableController {
     public void loadProgram(String filePath) {
         if (engine != null) {
             boolean loaded = engine.loadFromXML(filePath);
-            Platform.runLater(() -> {
-                if (loaded && engine.isLoaded()) {
-                    currentDegree = 0;
-                    refreshTable();
-                } else {
-                    clearTable();
-                }
-            });
+            Platform.runLater(() -> showProgram(loaded));
+        }
+    }
+
+    /** Shows the program the shared engine has just loaded, from degree 0. */
+    public void showLoadedProgram() {
+        if (engine != null) {
+            Platform.runLater(() -> showProgram(true));
+        }
+    }
+
+    private void showProgram(boolean loaded) {
+        if (loaded && engine.isLoaded()) {
+            currentDegree = 0;
+            refreshTable();
+        } else {
+            clearTable();
         }
     }
 
     public void refreshTable() {
         if (engine != null && engine.isLoaded()) {
-            List<InstructionDTO> instructions = engine.getInstructionsOfProgram(currentDegree);
+            List<InstructionDTO> instructions = engine.getInstructionsOfProgram(currentDegree, showRepeatedExpanded);
             if (instructions != null && !instructions.isEmpty()) {
                 instructionList.setAll(instructions);
                 variableNames.setAll(getVariableNamesAndLabels());
@@ -1,7 +1,7 @@
 package app.runMenu;
 
 import execute.EngineImpl;
-import execute.components.RunRecord;
+import execute.dto.RunResult;
 import execute.dto.VariableDTO;
 import app.historyTable.HistoryTableController;
 import app.programTable.ProgramTableController;
@@ -12,6 +12,8 @@ import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import logic.program.CancellationToken;
+import logic.program.RunOptions;
 
 import java.util.*;
 
@@ -71,10 +73,12 @@ public class RunMenuController {
     private final BooleanProperty running = new SimpleBooleanProperty(false);
     private final BooleanProperty debugging = new SimpleBooleanProperty(false);
     private final BooleanProperty debugPaused = new SimpleBooleanProperty(false);
+    private final BooleanProperty loading = new SimpleBooleanProperty(false); // a file loads into the engine
     private final IntegerProperty debugLine = new SimpleIntegerProperty(0);
-    private final IntegerProperty currentCycles = new SimpleIntegerProperty(0);
+    private final LongProperty currentCycles = new SimpleLongProperty(0);
 
     private int currentDegree = 0;
+    private CancellationToken runToken;
 
     @FXML
     public void initialize() {
@@ -149,27 +153,30 @@ public class RunMenuController {
     private void setupBindings() {
         // Button state bindings based on debug flow
         runButton.disableProperty().bind(
-                debugging.or(running)
+                debugging.or(running).or(loading)
         );
 
         debugButton.disableProperty().bind(
-                debugging.or(running)
+                debugging.or(running).or(loading)
         );
 
         stepOverButton.disableProperty().bind(
-                debugging.not().or(debugPaused.not())
+                debugging.not().or(debugPaused.not()).or(loading)
         );
 
         resumeButton.disableProperty().bind(
-                debugging.not().or(debugPaused.not())
+                debugging.not().or(debugPaused.not()).or(loading)
         );
 
         stopButton.disableProperty().bind(
-                debugging.not()
+                debugging.not().and(running.not())
         );
 
-        // Input table should be editable only when not running/debugging
-        inputsTable.disableProperty().bind(running.or(debugging));
+        // New Run resets the engine, which the run or load thread is still using
+        newRunButton.disableProperty().bind(running.or(loading));
+
+        // Input table should be editable only when not running/debugging/loading
+        inputsTable.disableProperty().bind(running.or(debugging).or(loading));
 
         // Cycles display
         if (cyclesLabel != null) {
@@ -236,32 +243,50 @@ public class RunMenuController {
         try {
             List<VariableDTO> inputsToLoad = prepareInputs();
             engine.loadInputs(inputsToLoad);
+            List<Long> inputValues = inputsToLoad.stream().map(VariableDTO::getValue).toList();
+
+            // Run the program off the FX thread so Stop can cancel it
+            CancellationToken token = new CancellationToken();
+            runToken = token;
+            int degree = currentDegree;
+            Thread worker = new Thread(() -> {
+                try {
+                    RunResult result = engine.runProgramAndRecord(degree, inputValues, RunOptions.NONE.withToken(token));
+                    Platform.runLater(() -> showRunResult(result));
+                } catch (Exception e) {
+                    Platform.runLater(() -> {
+                        runToken = null;
+                        console.appendText("Execution error: " + e.getMessage() + "\n");
+                        running.set(false);
+                    });
+                }
+            }, "program-run");
+            worker.setDaemon(true);
+            worker.start();
+        } catch (Exception e) {
+            console.appendText("Execution error: " + e.getMessage() + "\n");
+            running.set(false);
+        }
+    }
 
-            // Run the program
-            long result = engine.runProgramAndRecord(currentDegree,
-                    inputsToLoad.stream().map(VariableDTO::getValue).toList());
-
-            // Update displays
-            updateResultsDisplay();
-
-            // Get final cycles
-            List<RunRecord> history = engine.getHistory();
-            if (!history.isEmpty()) {
-                RunRecord lastRun = history.get(history.size() - 1);
-                currentCycles.set(lastRun.getCycles());
+    private void showRunResult(RunResult result) {
+        runToken = null;
 
-                console.appendText("Program completed successfully!\n");
-                console.appendText("Result: " + result + "\n");
-                console.appendText("Total cycles: " + lastRun.getCycles() + "\n");
-            }
+        // Update displays
+        updateResultsDisplay();
+        currentCycles.set(result.getCycles());
 
-            // Update history table
-            if (historyController != null) {
-                historyController.showHistory(engine.getHistory());
-            }
+        if (result.isCompleted()) {
+            console.appendText("Program completed successfully!\n");
+        } else {
+            console.appendText("Program stopped: " + result.getStopReason() + "\n");
+        }
+        console.appendText("Result: " + result.getResult() + "\n");
+        console.appendText("Total cycles: " + result.getCycles() + "\n");
 
-        } catch (Exception e) {
-            console.appendText("Execution error: " + e.getMessage() + "\n");
+        // Update history table
+        if (historyController != null) {
+            historyController.showHistory(engine.getHistory());
         }
 
         running.set(false);
@@ -388,6 +413,12 @@ public class RunMenuController {
     private void handleStop() {
         console.appendText("Execution stopped by user.\n");
 
+        // a run stays running until its thread returns, see showRunResult
+        if (runToken != null) {
+            runToken.cancel();
+            return;
+        }
+
         if (engine != null) {
             engine.debugStop();
         }
@@ -398,7 +429,6 @@ public class RunMenuController {
 
         debugging.set(false);
         debugPaused.set(false);
-        running.set(false);
 
         // Clear change highlighting
         previousVariableValues.clear();
@@ -516,6 +546,7 @@ public class RunMenuController {
     // Property getters for binding
     public BooleanProperty runningProperty() { return running; }
     public BooleanProperty debuggingProperty() { return debugging; }
+    public BooleanProperty loadingProperty() { return loading; }
     public IntegerProperty debugLineProperty() { return debugLine; }
-    public IntegerProperty currentCyclesProperty() { return currentCycles; }
+    public LongProperty currentCyclesProperty() { return currentCycles; }
 }
\ No newline at end of file
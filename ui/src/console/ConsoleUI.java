@@ -156,7 +156,7 @@ public class ConsoleUI {
 
                 engine.resetVars();
 
-                System.out.printf("Cycles: %d \n", engine.getCycles(degree));
+                System.out.printf("Cycles: %d \n", engine.getLastRunCycles());
             } else {
                 System.out.println("Invalid choice, please try again.");
             }